@@ -0,0 +1,221 @@
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import com.file.transform.TableCache;
+import com.google.common.base.Charsets;
+
+/**
+ * Runs a batch of merge jobs that may share input files.
+ *
+ * The batch file lists the jobs in the format of {@link MergeJob}, separated by blank lines.
+ * Independent jobs run concurrently, every distinct input is parsed only once and its table is
+ * shared read-only by the jobs using it, and dropped once the last of these jobs has finished.
+ */
+public class MergeBatch {
+	// Constants
+
+	/**
+	 * The Logger instance
+	 */
+	private static final Log LOGGER = LogFactory.getLog(MergeBatch.class);
+
+	/**
+	 * Number of merge jobs run concurrently
+	 *
+	 * Number of available processors by default
+	 */
+	private static final int NUM_WORKERS = Integer.getInteger("com.file.merger.batch.workers",
+		Runtime.getRuntime().availableProcessors());
+
+	// Attributes
+
+	private final int mNumWorkers;
+
+	// Associations
+
+	private final List<MergeJob> mJobList;
+
+	/**
+	 * Number of jobs yet to finish that use an input, indexed by input path and ID column.
+	 */
+	private final Map<String, Integer> mNumUsesByInputMap = new HashMap<String, Integer>();
+
+	private final TableCache mTableCache;
+
+	// Constructor
+
+	public MergeBatch(List<MergeJob> jobList, int numWorkers) {
+		if (jobList.isEmpty()) {
+			throw new IllegalStateException("At least one job must be provided");
+		}
+		else if (numWorkers <= 0) {
+			throw new IllegalStateException("Number of workers must be positive");
+		}
+
+		mJobList = jobList;
+		mNumWorkers = numWorkers;
+
+		for (MergeJob job : jobList) {
+			for (String input : getInputPaths(job)) {
+				String inputKey = input + '|' + job.getIdColumnName();
+				Integer numUses = mNumUsesByInputMap.get(inputKey);
+
+				mNumUsesByInputMap.put(inputKey, (numUses == null) ? 1 : numUses + 1);
+			}
+		}
+
+		// room for every distinct input, as inputs are only dropped once no job needs them anymore
+		mTableCache = new TableCache(Math.max(1, mNumUsesByInputMap.size()));
+	}
+
+	// Operations
+
+	/**
+	 * Reads all jobs of a batch file.
+	 */
+	public static List<MergeJob> readJobs(String filename) throws IOException {
+		List<MergeJob> jobList = new ArrayList<MergeJob>();
+		BufferedReader reader = new BufferedReader(
+			new InputStreamReader(new FileInputStream(filename), Charsets.UTF_8));
+
+		try {
+			MergeJob job;
+
+			while ((job = MergeJob.read(reader)) != null) {
+				jobList.add(job);
+			}
+		}
+		finally {
+			reader.close();
+		}
+
+		return jobList;
+	}
+
+	/**
+	 * Runs all jobs and waits for them to finish.
+	 *
+	 * @return Number of jobs that failed to write their output.
+	 */
+	public int run() throws InterruptedException {
+		ExecutorService workers = Executors.newFixedThreadPool(Math.min(mNumWorkers, mJobList.size()));
+		List<Future<Boolean>> resultList = new ArrayList<Future<Boolean>>(mJobList.size());
+
+		try {
+			for (final MergeJob job : mJobList) {
+				resultList.add(workers.submit(new Callable<Boolean>() {
+					@Override
+					public Boolean call() {
+						try {
+							return job.run(mTableCache);
+						}
+						finally {
+							release(job);
+						}
+					}
+				}));
+			}
+
+			int numFailed = 0;
+
+			for (int i = 0; i < mJobList.size(); i++) {
+				boolean merged = false;
+
+				try {
+					merged = resultList.get(i).get();
+				}
+				catch (ExecutionException e) {
+					if (LOGGER.isWarnEnabled()) {
+						LOGGER.warn("Merge job for \"" + mJobList.get(i) + "\" failed", e.getCause());
+					}
+				}
+
+				if (!merged) {
+					numFailed++;
+				}
+			}
+
+			return numFailed;
+		}
+		finally {
+			workers.shutdown();
+		}
+	}
+
+	/**
+	 * Drops the tables of the inputs of a finished job that no other job needs anymore.
+	 */
+	private void release(MergeJob job) {
+		for (String input : getInputPaths(job)) {
+			String inputKey = input + '|' + job.getIdColumnName();
+			boolean lastUse;
+
+			synchronized (mNumUsesByInputMap) {
+				int numUses = mNumUsesByInputMap.get(inputKey) - 1;
+
+				mNumUsesByInputMap.put(inputKey, numUses);
+
+				lastUse = (numUses == 0);
+			}
+
+			if (lastUse) {
+				mTableCache.remove(input, job.getIdColumnName());
+			}
+		}
+	}
+
+	/**
+	 * @return The absolute paths of the distinct inputs of the job.
+	 */
+	private static Set<String> getInputPaths(MergeJob job) {
+		Set<String> inputSet = new LinkedHashSet<String>();
+
+		for (String input : job.getInputList()) {
+			inputSet.add(new File(input).getAbsolutePath());
+		}
+
+		return inputSet;
+	}
+
+	/**
+	 * Entry point of the batch mode.
+	 *
+	 * @param args command line arguments: the batch file.
+	 *
+	 * @throws Exception bad things had happened.
+	 */
+	public static void main(final String[] args) throws Exception {
+		if (args.length != 1) {
+			System.err.println("Usage: java MergeBatch batchFile");
+
+			System.exit(1);
+		}
+
+		List<MergeJob> jobList = readJobs(args[0]);
+		MergeBatch batch = new MergeBatch(jobList, NUM_WORKERS);
+		int numFailed = batch.run();
+
+		LOGGER.info((jobList.size() - numFailed) + " of " + jobList.size() + " merge jobs succeeded");
+
+		if (numFailed > 0) {
+			System.exit(2);
+		}
+	}
+}
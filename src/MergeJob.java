@@ -0,0 +1,164 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import com.file.transform.TableCache;
+import com.google.common.base.Strings;
+
+/**
+ * One merge job: the files to merge, the output file, the name of the ID column and, optionally,
+ * the driver file.
+ *
+ * Jobs are described by one "key=value" pair per line:
+ *
+ * 		input=first.html
+ * 		input=second.csv
+ * 		output=combined.csv
+ * 		idColumn=ID (optional, "com.file.merger.idColumnName" by default)
+ * 		driver=second.csv (optional, one of the inputs whose IDs are the only ones merged)
+ *
+ * A blank line ends the job, and lines starting with '#' are comments.
+ */
+public class MergeJob {
+	// Attributes
+
+	private final List<String> mInputList;
+
+	private final String mOutputFilename;
+
+	private final String mIdColumnName;
+
+	/**
+	 * Name of the driver file, null to merge the rows of all inputs.
+	 */
+	private final String mDriverFilename;
+
+	// Constructor
+
+	public MergeJob(List<String> inputList, String outputFilename, String idColumnName) {
+		this(inputList, outputFilename, idColumnName, null);
+	}
+
+	public MergeJob(List<String> inputList, String outputFilename, String idColumnName,
+			String driverFilename) {
+		if (inputList == null || inputList.isEmpty()) {
+			throw new IllegalStateException("At least one input must be provided");
+		}
+		else if (Strings.isNullOrEmpty(outputFilename)) {
+			throw new IllegalStateException("Output file name must be provided");
+		}
+		else if (Strings.isNullOrEmpty(idColumnName)) {
+			throw new IllegalStateException("Name of the ID column must be provided");
+		}
+		else if (driverFilename != null && !inputList.contains(driverFilename)) {
+			throw new IllegalStateException("Driver file \"" + driverFilename + "\" must be one of the inputs");
+		}
+
+		mInputList = Collections.unmodifiableList(new ArrayList<String>(inputList));
+		mOutputFilename = outputFilename;
+		mIdColumnName = idColumnName;
+		mDriverFilename = driverFilename;
+	}
+
+	// Operations
+
+	/**
+	 * Reads the next job.
+	 *
+	 * @return The job, or null if there are no more jobs.
+	 *
+	 * @throws IllegalStateException if the job is malformed.
+	 */
+	public static MergeJob read(BufferedReader reader) throws IOException {
+		List<String> inputList = new ArrayList<String>();
+		String outputFilename = null;
+		String idColumnName = RecordMerger.ID_COLUMN_NAME;
+		String driverFilename = null;
+		boolean empty = true;
+		String line;
+
+		while ((line = reader.readLine()) != null) {
+			line = line.trim();
+
+			if (line.isEmpty()) {
+				if (empty) {
+					continue;
+				}
+
+				break;
+			}
+			else if (line.startsWith("#")) {
+				continue;
+			}
+
+			int separatorIdx = line.indexOf('=');
+
+			if (separatorIdx <= 0) {
+				throw new IllegalStateException("Malformed line \"" + line + "\"");
+			}
+
+			String key = line.substring(0, separatorIdx).trim();
+			String value = line.substring(separatorIdx + 1).trim();
+
+			if ("input".equals(key)) {
+				inputList.add(value);
+			}
+			else if ("output".equals(key)) {
+				outputFilename = value;
+			}
+			else if ("idColumn".equals(key)) {
+				idColumnName = value;
+			}
+			else if ("driver".equals(key)) {
+				driverFilename = value;
+			}
+			else {
+				throw new IllegalStateException("Unknown key \"" + key + "\"");
+			}
+
+			empty = false;
+		}
+
+		return empty ? null : new MergeJob(inputList, outputFilename, idColumnName, driverFilename);
+	}
+
+	/**
+	 * Runs the job.
+	 *
+	 * @param tableCache Cache of parsed input tables, or null to parse every input.
+	 *
+	 * @return True, if the merged table was written to the output file. Otherwise, false.
+	 */
+	public boolean run(TableCache tableCache) {
+		RecordMerger merger = new RecordMerger(mOutputFilename, mIdColumnName,
+			mInputList.toArray(new String[mInputList.size()]));
+
+		merger.setTableCache(tableCache);
+		merger.setDriverFile(mDriverFilename);
+
+		return merger.mergeTablesAndOutputToFile();
+	}
+
+	public List<String> getInputList() {
+		return mInputList;
+	}
+
+	public String getOutputFilename() {
+		return mOutputFilename;
+	}
+
+	public String getIdColumnName() {
+		return mIdColumnName;
+	}
+
+	public String getDriverFilename() {
+		return mDriverFilename;
+	}
+
+	@Override
+	public String toString() {
+		return mOutputFilename;
+	}
+}
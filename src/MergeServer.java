@@ -0,0 +1,220 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import com.file.transform.TableCache;
+import com.google.common.base.Charsets;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Long-running merge server, so that merge jobs run in one warm JVM instead of paying for JVM
+ * startup, class loading and JIT warm-up on every run of {@link RecordMerger}.
+ *
+ * Jobs are posted to http://127.0.0.1:&lt;port&gt;/merge in the format of {@link MergeJob}.
+ *
+ * Jobs run on a bounded pool of workers. The reply is "OK &lt;millis&gt;" when the merged table
+ * was written, "FAILED &lt;millis&gt;" when it was not (see the server log), and HTTP 503 when
+ * all workers are busy and the job queue is full. Parsed inputs are cached across jobs until the
+ * input file changes.
+ */
+public class MergeServer {
+	// Constants
+
+	/**
+	 * The Logger instance
+	 */
+	private static final Log LOGGER = LogFactory.getLog(MergeServer.class);
+
+	/**
+	 * Loopback port to listen on
+	 *
+	 * 7878 by default
+	 */
+	private static final int PORT = Integer.getInteger("com.file.merger.server.port", 7878);
+
+	/**
+	 * Number of merge jobs run concurrently
+	 *
+	 * Number of available processors by default
+	 */
+	private static final int NUM_WORKERS = Integer.getInteger("com.file.merger.server.workers",
+		Runtime.getRuntime().availableProcessors());
+
+	/**
+	 * Number of merge jobs waiting for a worker before new jobs are rejected
+	 *
+	 * 64 by default
+	 */
+	private static final int QUEUE_SIZE = Integer.getInteger("com.file.merger.server.queueSize", 64);
+
+	/**
+	 * Number of parsed input tables kept across jobs
+	 *
+	 * 32 by default
+	 */
+	private static final int CACHE_SIZE = Integer.getInteger("com.file.merger.server.cacheSize", 32);
+
+	// Attributes
+
+	private final HttpServer mHttpServer;
+
+	private final ExecutorService mHttpExecutor;
+
+	private final ThreadPoolExecutor mWorkers;
+
+	// Associations
+
+	private final TableCache mTableCache;
+
+	// Constructor
+
+	public MergeServer(int port, int numWorkers, int queueSize, int cacheSize) throws IOException {
+		mTableCache = new TableCache(cacheSize);
+		mWorkers = new ThreadPoolExecutor(numWorkers, numWorkers, 0L, TimeUnit.MILLISECONDS,
+			new ArrayBlockingQueue<Runnable>(queueSize));
+		mHttpExecutor = Executors.newCachedThreadPool();
+		mHttpServer = HttpServer.create(new InetSocketAddress(InetAddress.getByName(null), port), 0);
+
+		mHttpServer.createContext("/merge", new MergeHandler());
+		mHttpServer.setExecutor(mHttpExecutor);
+	}
+
+	// Operations
+
+	public void start() {
+		mHttpServer.start();
+
+		LOGGER.info("Merge server listening on " + mHttpServer.getAddress() + " with " +
+			mWorkers.getMaximumPoolSize() + " workers");
+	}
+
+	public void stop() {
+		mHttpServer.stop(0);
+		mHttpExecutor.shutdown();
+		mWorkers.shutdown();
+		mTableCache.clear();
+	}
+
+	private static void reply(HttpExchange exchange, int status, String message) throws IOException {
+		byte[] body = (message + "\n").getBytes(Charsets.UTF_8);
+
+		exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+		exchange.sendResponseHeaders(status, body.length);
+
+		OutputStream out = exchange.getResponseBody();
+
+		try {
+			out.write(body);
+		}
+		finally {
+			out.close();
+		}
+	}
+
+	/**
+	 * Parses the job posted to /merge and waits for a worker to run it.
+	 */
+	private class MergeHandler implements HttpHandler {
+		@Override
+		public void handle(HttpExchange exchange) throws IOException {
+			try {
+				if (!"POST".equalsIgnoreCase(exchange.getRequestMethod())) {
+					reply(exchange, 405, "Only POST is supported");
+
+					return;
+				}
+
+				final MergeJob job;
+
+				try {
+					job = MergeJob.read(new BufferedReader(
+						new InputStreamReader(exchange.getRequestBody(), Charsets.UTF_8)));
+				}
+				catch (IllegalStateException e) {
+					reply(exchange, 400, e.getMessage());
+
+					return;
+				}
+
+				if (job == null) {
+					reply(exchange, 400, "At least one input, an output and an ID column must be provided");
+
+					return;
+				}
+
+				long startTime = System.nanoTime();
+				Future<Boolean> result;
+
+				try {
+					result = mWorkers.submit(new Callable<Boolean>() {
+						@Override
+						public Boolean call() {
+							return job.run(mTableCache);
+						}
+					});
+				}
+				catch (RejectedExecutionException e) {
+					reply(exchange, 503, "Job queue is full");
+
+					return;
+				}
+
+				boolean merged = false;
+
+				try {
+					merged = result.get();
+				}
+				catch (ExecutionException e) {
+					if (LOGGER.isWarnEnabled()) {
+						LOGGER.warn("Merge job for \"" + job + "\" failed", e.getCause());
+					}
+				}
+				catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+
+				long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime);
+
+				LOGGER.info("Merge job for \"" + job + "\" finished in " + elapsedMillis + " ms");
+
+				reply(exchange, merged ? 200 : 500, (merged ? "OK " : "FAILED ") + elapsedMillis);
+			}
+			finally {
+				exchange.close();
+			}
+		}
+	}
+
+	/**
+	 * Starts the merge server and runs until the JVM is shut down.
+	 */
+	public static void main(final String[] args) throws Exception {
+		final MergeServer server = new MergeServer(PORT, NUM_WORKERS, QUEUE_SIZE, CACHE_SIZE);
+
+		Runtime.getRuntime().addShutdownHook(new Thread() {
+			@Override
+			public void run() {
+				server.stop();
+			}
+		});
+
+		server.start();
+	}
+}
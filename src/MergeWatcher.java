@@ -0,0 +1,224 @@
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import com.file.io.ShardedCSVFileWriter;
+import com.file.transform.TableCache;
+import com.file.type.InputFileType;
+
+/**
+ * Watches a landing directory and re-merges every supported input file in it whenever files are
+ * created, modified or deleted.
+ *
+ * Bursts of file events are debounced into one merge. Inputs that did not change since the last
+ * merge are not parsed again, and the output file is replaced atomically, so readers never see a
+ * partially written output file.
+ */
+public class MergeWatcher {
+	// Constants
+
+	/**
+	 * The Logger instance
+	 */
+	private static final Log LOGGER = LogFactory.getLog(MergeWatcher.class);
+
+	/**
+	 * Output filename
+	 *
+	 * "combined.csv" by default
+	 */
+	private static final String FILENAME_COMBINED =
+		System.getProperty("com.file.merger.outputFileName", "combined.csv");
+
+	/**
+	 * Quiet period after the last file event before the inputs are merged
+	 *
+	 * 500 milliseconds by default
+	 */
+	private static final long DEBOUNCE_MILLIS = Long.getLong("com.file.merger.watch.debounceMillis", 500L);
+
+	/**
+	 * Number of parsed input tables kept between merges
+	 *
+	 * 1024 by default
+	 */
+	private static final int CACHE_SIZE = Integer.getInteger("com.file.merger.watch.cacheSize", 1024);
+
+	// Attributes
+
+	/**
+	 * Watched directory
+	 */
+	private final Path mDirectory;
+
+	/**
+	 * Absolute path of the output file, which is never treated as an input
+	 */
+	private final Path mOutput;
+
+	private final String mIdColumnName;
+
+	private final long mDebounceMillis;
+
+	// Associations
+
+	/**
+	 * Tables parsed from the inputs, reused until an input changes
+	 */
+	private final TableCache mTableCache;
+
+	// Constructor
+
+	public MergeWatcher(String directory, String outputFilename, String idColumnName,
+			long debounceMillis, int cacheSize) {
+		mDirectory = Paths.get(directory).toAbsolutePath().normalize();
+		mOutput = Paths.get(outputFilename).toAbsolutePath().normalize();
+		mIdColumnName = idColumnName;
+		mDebounceMillis = debounceMillis;
+		mTableCache = new TableCache(cacheSize);
+
+		if (!Files.isDirectory(mDirectory)) {
+			throw new IllegalStateException("\"" + directory + "\" is not a directory");
+		}
+	}
+
+	// Operations
+
+	/**
+	 * Merges the inputs once and then again after every burst of changes, until the watched
+	 * directory becomes inaccessible or the thread is interrupted.
+	 */
+	public void run() throws IOException, InterruptedException {
+		WatchService watchService = FileSystems.getDefault().newWatchService();
+
+		try {
+			mDirectory.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+				StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+
+			LOGGER.info("Watching \"" + mDirectory + "\"");
+
+			remerge();
+
+			while (true) {
+				WatchKey key = watchService.take();
+				boolean inputsChanged = processEvents(key);
+
+				// wait for the burst of events to settle before merging
+				while ((key = watchService.poll(mDebounceMillis, TimeUnit.MILLISECONDS)) != null) {
+					inputsChanged |= processEvents(key);
+				}
+
+				if (inputsChanged) {
+					remerge();
+				}
+			}
+		}
+		finally {
+			watchService.close();
+		}
+	}
+
+	/**
+	 * @return True, if any of the events affects an input file.
+	 */
+	private boolean processEvents(WatchKey key) {
+		boolean inputsChanged = false;
+
+		for (WatchEvent<?> event : key.pollEvents()) {
+			if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+				inputsChanged = true;
+
+				continue;
+			}
+
+			Path path = mDirectory.resolve((Path) event.context());
+
+			if (isInput(path)) {
+				inputsChanged = true;
+
+				if (event.kind() == StandardWatchEventKinds.ENTRY_DELETE) {
+					mTableCache.remove(path.toString(), mIdColumnName);
+				}
+			}
+		}
+
+		if (!key.reset()) {
+			throw new IllegalStateException("\"" + mDirectory + "\" is no longer accessible");
+		}
+
+		return inputsChanged;
+	}
+
+	/**
+	 * @return True, if the file is an input: neither the output file nor one of its shards or its
+	 * manifest.
+	 */
+	private boolean isInput(Path path) {
+		return !path.equals(mOutput) && !ShardedCSVFileWriter.isShardOrManifest(mOutput.toString(), path.toFile()) &&
+			InputFileType.extractFileType(path.getFileName().toString()) != InputFileType.FileType.UNKNOWN;
+	}
+
+	/**
+	 * Merges every input file currently in the watched directory.
+	 */
+	private void remerge() throws IOException {
+		List<String> inputList = new ArrayList<String>();
+		DirectoryStream<Path> directoryStream = Files.newDirectoryStream(mDirectory);
+
+		try {
+			for (Path path : directoryStream) {
+				if (Files.isRegularFile(path) && isInput(path)) {
+					inputList.add(path.toString());
+				}
+			}
+		}
+		finally {
+			directoryStream.close();
+		}
+
+		if (inputList.isEmpty()) {
+			LOGGER.info("No input files in \"" + mDirectory + "\". Keeping previous output.");
+
+			return;
+		}
+
+		RecordMerger merger = new RecordMerger(mOutput.toString(), mIdColumnName,
+			inputList.toArray(new String[inputList.size()]));
+
+		merger.setTableCache(mTableCache);
+		merger.mergeTablesAndOutputToFile();
+	}
+
+	/**
+	 * Entry point of the watch mode.
+	 *
+	 * @param args command line arguments: the directory to watch.
+	 *
+	 * @throws Exception bad things had happened.
+	 */
+	public static void main(final String[] args) throws Exception {
+		if (args.length != 1) {
+			System.err.println("Usage: java MergeWatcher directory");
+
+			System.exit(1);
+		}
+
+		MergeWatcher watcher = new MergeWatcher(args[0], FILENAME_COMBINED, RecordMerger.ID_COLUMN_NAME,
+			DEBOUNCE_MILLIS, CACHE_SIZE);
+
+		watcher.run();
+	}
+}
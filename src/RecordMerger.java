@@ -1,18 +1,36 @@
 import java.io.File;
 import java.io.IOException;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
+import com.file.io.AbstractFileReader;
+import com.file.io.CSVDeltaWriter;
 import com.file.io.CSVFileReader;
 import com.file.io.CSVFileWriter;
+import com.file.io.ColumnarFileReader;
+import com.file.io.ColumnarFileWriter;
 import com.file.io.HTMLFileReader;
+import com.file.io.MergeCheckpoint;
+import com.file.io.OutputFiles;
+import com.file.io.RejectFileWriter;
+import com.file.io.ShardedCSVFileWriter;
+import com.file.merge.Checkpointer;
 import com.file.merge.Merger;
+import com.file.transform.IdFilter;
 import com.file.transform.InternalTable;
+import com.file.transform.TableCache;
+import com.file.type.CSVScannerType;
 import com.file.type.InputFileType;
 import com.file.type.OutputFileType;
+import com.file.type.OutputIndexType;
 import com.google.common.base.Strings;
 
 /**
@@ -25,7 +43,7 @@ import com.google.common.base.Strings;
  * 2. Parses each file into an internal data structure
  * 		- Merges the parsed table into a _merged_ table (also an internal data structure)
  *
- * 3. Writes the merged table to CSV 
+ * 3. Writes the merged table to CSV or to the binary columnar format
  */
 public class RecordMerger {
 	// Constants
@@ -44,28 +62,180 @@ public class RecordMerger {
 		System.getProperty("com.file.merger.outputFileName", "combined.csv");
 
 	/**
-	 * Name of the ID column
+	 * Name of the ID column, or comma separated names of the columns of a composite ID
+	 * (e.g. "region,account_id")
 	 *
 	 * "ID" by default
 	 */
 	public static final String ID_COLUMN_NAME =
 		System.getProperty("com.file.merger.idColumnName", "ID");
 
+	/**
+	 * Type of the sidecar index written alongside the output file: "none", "sparse" or "full"
+	 *
+	 * "none" by default
+	 */
+	private static final OutputIndexType.IndexType OUTPUT_INDEX_TYPE =
+		OutputIndexType.extractIndexType(System.getProperty("com.file.merger.outputIndex", "none"));
+
+	/**
+	 * Number of rows per entry of a sparse output index
+	 *
+	 * 64 by default
+	 */
+	private static final int OUTPUT_INDEX_BLOCK_SIZE =
+		Integer.getInteger("com.file.merger.outputIndexBlockSize", 64);
+
+	/**
+	 * Number of files a CSV output is split into by ID range, e.g. "combined-00001-00000.csv" (the
+	 * generation of the output, then the file), along with a manifest "combined.csv.manifest"
+	 * listing the ID bounds and row count of every file
+	 *
+	 * 1 (not split) by default
+	 */
+	private static final int OUTPUT_SHARDS = Integer.getInteger("com.file.merger.outputShards", 1);
+
+	/**
+	 * Whether column chunks of a columnar (".dmc") output file are compressed
+	 *
+	 * false by default
+	 */
+	private static final boolean OUTPUT_COMPRESSION =
+		Boolean.getBoolean("com.file.merger.outputCompression");
+
+	/**
+	 * Whether the rows inserted, updated and deleted since the previous output are written to a
+	 * delta file "combined.csv.delta" next to the output file, comparing the merged rows with the
+	 * row hashes of the previous output kept in "combined.csv.hashes"
+	 *
+	 * false by default
+	 */
+	private static final boolean OUTPUT_DELTA = Boolean.getBoolean("com.file.merger.outputDelta");
+
+	/**
+	 * Kernel scanning CSV inputs for separators, quotes and line terminators: "swar" (eight bytes
+	 * at a time), "scalar" (one byte at a time) or "none" (parse with CSVReader only)
+	 *
+	 * "swar" by default
+	 */
+	private static final CSVScannerType.ScannerType CSV_SCANNER_TYPE =
+		CSVScannerType.extractScannerType(System.getProperty("com.file.merger.csvScanner", "swar"));
+
+	/**
+	 * Number of rows of a CSV or HTML input sampled to infer which columns hold integers, decimals
+	 * or dates, which are then kept as primitive values instead of text
+	 *
+	 * 0 (all columns kept as text) by default
+	 */
+	private static final int TYPE_SAMPLE_SIZE = Integer.getInteger("com.file.merger.typeSampleSize", 0);
+
+	/**
+	 * Directory where the rows of every input skipped for a wrong number of columns or a null,
+	 * empty or duplicate ID are written, e.g. "first.csv.1a2b3c4d.rejects" (see RejectFileWriter)
+	 *
+	 * None (skipped rows are only counted) by default
+	 */
+	private static final String REJECT_DIR = System.getProperty("com.file.merger.rejectDir");
+
+	/**
+	 * Maximum number of skipped rows written per input, the others being only counted
+	 *
+	 * 10000 by default
+	 */
+	private static final int MAX_REJECTS =
+		Integer.getInteger("com.file.merger.maxRejects", RejectFileWriter.DEFAULT_MAX_REJECTS);
+
+	/**
+	 * Number of IDs of the driver file beyond which they are kept in a Bloom filter rather than an
+	 * exact set, rows that get through the filter by mistake being dropped when merged
+	 *
+	 * 1000000 by default
+	 */
+	private static final int DRIVER_BLOOM_THRESHOLD =
+		Integer.getInteger("com.file.merger.driverBloomThreshold", 1000000);
+
+	/**
+	 * Expected rate of other IDs that the Bloom filter of the IDs of the driver file lets through
+	 *
+	 * 0.01 by default
+	 */
+	private static final double DRIVER_BLOOM_FALSE_POSITIVE_RATE =
+		Double.parseDouble(System.getProperty("com.file.merger.driverBloomFpp", "0.01"));
+
+	/**
+	 * Number of seconds between checkpoints of the inputs merged so far and of the partially
+	 * merged table, from which a merge started with "--resume" goes on
+	 *
+	 * 0 (no checkpoints) by default
+	 */
+	private static final int CHECKPOINT_INTERVAL = Integer.getInteger("com.file.merger.checkpointInterval", 0);
+
+	/**
+	 * Directory of the checkpoints
+	 *
+	 * The output file name followed by ".checkpoint" by default
+	 */
+	private static final String CHECKPOINT_DIR = System.getProperty("com.file.merger.checkpointDir");
+
 	// Attributes
 
 	/**
 	 * Name of files to merge
 	 */
-	public static String[] mFilenames;
+	private final String[] mFilenames;
+
+	/**
+	 * Name of the output file
+	 */
+	private final String mOutputFilename;
+
+	/**
+	 * Name of the ID column
+	 */
+	private final String mIdColumnName;
+
+	/**
+	 * Whether the merge goes on from the checkpoint of a previous merge, if any
+	 */
+	private boolean mResume;
+
+	/**
+	 * Name of the driver file, one of the files to merge whose IDs are the only ones merged: the
+	 * rows of other files are dropped as they are read unless their ID is in the driver file, which
+	 * they then add columns and data to. Null to merge the rows of all files
+	 */
+	private String mDriverFilename;
+
+	// Associations
+
+	/**
+	 * Filter of the IDs of the driver file, once it is merged, which the rows of other files are
+	 * checked against as they are read
+	 */
+	private IdFilter mIdFilter;
+
+	/**
+	 * Cache of parsed input tables shared between merges, null if parsed tables are not cached
+	 */
+	private TableCache mTableCache;
 
 	// Constructor
 
 	public RecordMerger(String... filenames) {
+		this(FILENAME_COMBINED, ID_COLUMN_NAME, filenames);
+	}
+
+	public RecordMerger(String outputFilename, String idColumnName, String... filenames) {
 		mFilenames = filenames;
+		mOutputFilename = outputFilename;
+		mIdColumnName = idColumnName;
 
-		if (Strings.isNullOrEmpty(FILENAME_COMBINED)) {
+		if (Strings.isNullOrEmpty(mOutputFilename)) {
 			throw new IllegalStateException("Output file name must be provided");
 		}
+		else if (Strings.isNullOrEmpty(mIdColumnName)) {
+			throw new IllegalStateException("Name of the ID column must be provided");
+		}
 	}
 
 	// Operations
@@ -99,27 +269,57 @@ public class RecordMerger {
 		return fileTypeByFileNameMap;
 	}
 
+	/**
+	 * Parses input files using appropriate file processor, unless the table is already cached.
+	 */
+	private InternalTable parse(final String fileName, final InputFileType.FileType fileType) {
+		// tables filtered by the IDs of a driver file are of no use to other merges
+		if (mTableCache == null || mIdFilter != null) {
+			return parseFile(fileName, fileType);
+		}
+
+		return mTableCache.get(fileName, mIdColumnName, new Callable<InternalTable>() {
+			@Override
+			public InternalTable call() {
+				return parseFile(fileName, fileType);
+			}
+		});
+	}
+
 	/**
 	 * Parses input files using appropriate file processor.
 	 */
-	private InternalTable parse(String fileName, InputFileType.FileType fileType){
+	private InternalTable parseFile(String fileName, InputFileType.FileType fileType) {
 		InternalTable table = null;
 
 		try {
 			if (fileType == InputFileType.FileType.CSV) {
 				// Assuming the name of the ID column is the same for all tables
 				// In real world scenario, this should be configuration per table
-				CSVFileReader csvReader = new CSVFileReader(ID_COLUMN_NAME);
+				CSVFileReader csvReader = new CSVFileReader(mIdColumnName, CSV_SCANNER_TYPE);
+
+				csvReader.setTypeSampleSize(TYPE_SAMPLE_SIZE);
+				configure(csvReader);
 
 				table = csvReader.process(fileName);
 			}
 			else if (fileType == InputFileType.FileType.HTML) {
 				// Assuming the name of the ID column is the same for all tables
 				// In real world scenario, this should be configuration per table
-				HTMLFileReader htmlReader = new HTMLFileReader(ID_COLUMN_NAME);
+				HTMLFileReader htmlReader = new HTMLFileReader(mIdColumnName);
+
+				htmlReader.setTypeSampleSize(TYPE_SAMPLE_SIZE);
+				configure(htmlReader);
 
 				table = htmlReader.process(fileName);
 			}
+			else if (fileType == InputFileType.FileType.COLUMNAR) {
+				ColumnarFileReader columnarReader = new ColumnarFileReader(mIdColumnName);
+
+				configure(columnarReader);
+
+				table = columnarReader.process(fileName);
+			}
 		}
 		catch(IOException e) {
 			LOGGER.info("Failed to parse file \"" + fileName + "\". Skipping it.", e);
@@ -128,6 +328,12 @@ public class RecordMerger {
 		return table;
 	}
 
+	private void configure(AbstractFileReader reader) {
+		reader.setRejectDirectory(Strings.isNullOrEmpty(REJECT_DIR) ? null : new File(REJECT_DIR));
+		reader.setMaxRejects(MAX_REJECTS);
+		reader.setIdFilter(mIdFilter);
+	}
+
 	/**
 	 * Merges tables.
 	 */
@@ -143,23 +349,80 @@ public class RecordMerger {
 			LOGGER.info("Attempting to merge " + fileTypeByFileNameMap.size() + " files: " +
 				fileTypeByFileNameMap.entrySet());
 
-			Merger merger = new Merger();
+			Map<String, InputFileType.FileType> fileTypeByFileNameMergeOrderMap = getMergeOrder(fileTypeByFileNameMap);
 
-			for (Map.Entry<String, InputFileType.FileType> fileTypeByFileNameEntry : fileTypeByFileNameMap.entrySet()) {
-				String fileName = fileTypeByFileNameEntry.getKey();
-				InputFileType.FileType fileType = fileTypeByFileNameEntry.getValue();
+			if (fileTypeByFileNameMergeOrderMap == null) {
+				return null;
+			}
 
-				InternalTable table = parse(fileName, fileType);
+			MergeCheckpoint checkpoint = mResume ? readCheckpoint(fileTypeByFileNameMap.keySet()) : null;
+			Set<String> mergedFileNameSet = new HashSet<String>();
+			Merger merger;
 
-				try {
-					merger.merge(table);
-				}
-				catch (IllegalStateException e) {
-					if (LOGGER.isWarnEnabled()) {
-						LOGGER.warn("Failed to merge table provided in file \"" + fileName + "\"", e);
+			if (checkpoint == null) {
+				merger = new Merger();
+			}
+			else {
+				mergedFileNameSet.addAll(checkpoint.getInputList());
+				merger = new Merger(checkpoint.getTable());
+
+				LOGGER.info("Resuming merge from checkpoint of " + mergedFileNameSet.size() + " files");
+			}
+
+			merger.setSemiJoin(isSemiJoin());
+			mIdFilter = null;
+
+			Checkpointer checkpointer = (CHECKPOINT_INTERVAL > 0) ?
+				new Checkpointer(getCheckpointDir(), CHECKPOINT_INTERVAL * 1000L, checkpoint) : null;
+
+			try {
+				for (Map.Entry<String, InputFileType.FileType> fileTypeByFileNameEntry : fileTypeByFileNameMergeOrderMap.entrySet()) {
+					String fileName = fileTypeByFileNameEntry.getKey();
+					InputFileType.FileType fileType = fileTypeByFileNameEntry.getValue();
+
+					if (mergedFileNameSet.contains(fileName)) {
+						continue;
+					}
+					else if (isSemiJoin() && !fileName.equals(mDriverFilename) && mIdFilter == null) {
+						// the driver file, merged first, holds all IDs of the merged table
+						if (merger.getMergedTable() == null) {
+							if (LOGGER.isWarnEnabled()) {
+								LOGGER.warn("Driver file \"" + mDriverFilename + "\" could not be merged. Abandoning merge operation.");
+							}
+
+							return null;
+						}
+
+						mIdFilter = IdFilter.of(merger.getMergedTable(), DRIVER_BLOOM_THRESHOLD,
+							DRIVER_BLOOM_FALSE_POSITIVE_RATE);
+
+						LOGGER.info("Merging only the rows of the IDs of the driver file (" + mIdFilter + ")");
+					}
+
+					InternalTable table = parse(fileName, fileType);
+
+					try {
+						merger.merge(table);
+
+						// inputs that failed are left out of checkpoints, so that a resumed merge retries them
+						if (table != null && checkpointer != null) {
+							checkpointer.merged(fileName, merger.getMergedTable());
+						}
+					}
+					catch (IllegalStateException e) {
+						if (LOGGER.isWarnEnabled()) {
+							LOGGER.warn("Failed to merge table provided in file \"" + fileName + "\"", e);
+						}
 					}
 				}
 			}
+			finally {
+				mIdFilter = null;
+
+				if (checkpointer != null) {
+					checkpointer.close();
+				}
+			}
 
 			return merger.getMergedTable();
 		}
@@ -167,22 +430,103 @@ public class RecordMerger {
 		return null;
 	}
 
+	/**
+	 * @return The files in merge order, the driver file first if any, or null if the driver file is
+	 * not one of the files.
+	 */
+	private Map<String, InputFileType.FileType> getMergeOrder(
+			HashMap<String, InputFileType.FileType> fileTypeByFileNameMap) {
+		if (!isSemiJoin()) {
+			return fileTypeByFileNameMap;
+		}
+		else if (!fileTypeByFileNameMap.containsKey(mDriverFilename)) {
+			if (LOGGER.isWarnEnabled()) {
+				LOGGER.warn("Driver file \"" + mDriverFilename +
+					"\" is not one of the valid files provided. Abandoning merge operation.");
+			}
+
+			return null;
+		}
+
+		Map<String, InputFileType.FileType> fileTypeByFileNameMergeOrderMap =
+			new LinkedHashMap<String, InputFileType.FileType>();
+
+		fileTypeByFileNameMergeOrderMap.put(mDriverFilename, fileTypeByFileNameMap.get(mDriverFilename));
+		fileTypeByFileNameMergeOrderMap.putAll(fileTypeByFileNameMap);
+
+		return fileTypeByFileNameMergeOrderMap;
+	}
+
+	private boolean isSemiJoin() {
+		return !Strings.isNullOrEmpty(mDriverFilename);
+	}
+
+	/**
+	 * Reads the checkpoint of a previous merge.
+	 *
+	 * @return The checkpoint, or null if there is none or it does not belong to a merge of the files.
+	 */
+	private MergeCheckpoint readCheckpoint(Set<String> fileNameSet) {
+		MergeCheckpoint checkpoint = null;
+
+		try {
+			checkpoint = MergeCheckpoint.read(getCheckpointDir(), mIdColumnName);
+		}
+		catch (IOException e) {
+			if (LOGGER.isWarnEnabled()) {
+				LOGGER.warn("Failed to read checkpoint in \"" + getCheckpointDir() + "\". Merging all files.", e);
+			}
+		}
+
+		if (checkpoint == null) {
+			LOGGER.info("No checkpoint to resume from. Merging all files.");
+		}
+		else if (!fileNameSet.containsAll(checkpoint.getInputList())) {
+			if (LOGGER.isWarnEnabled()) {
+				LOGGER.warn("Ignoring checkpoint in \"" + getCheckpointDir() +
+					"\" because it merged files that are not provided. Merging all files.");
+			}
+
+			return null;
+		}
+		else if (isSemiJoin() && (checkpoint.getInputList().isEmpty() ||
+				!mDriverFilename.equals(checkpoint.getInputList().get(0)))) {
+			// the checkpoint holds rows of other files than the driver file
+			if (LOGGER.isWarnEnabled()) {
+				LOGGER.warn("Ignoring checkpoint in \"" + getCheckpointDir() +
+					"\" because it did not merge driver file \"" + mDriverFilename + "\" first. Merging all files.");
+			}
+
+			return null;
+		}
+		else if (TYPE_SAMPLE_SIZE > 0) {
+			// the snapshot holds text only
+			checkpoint.getTable().inferColumnTypes();
+		}
+
+		return checkpoint;
+	}
+
+	private File getCheckpointDir() {
+		return new File(Strings.isNullOrEmpty(CHECKPOINT_DIR) ? mOutputFilename + ".checkpoint" : CHECKPOINT_DIR);
+	}
+
 	/**
 	 * Validates output file by ensuring the file type is supported.
 	 */
 	private boolean validateOutputFileType() {
-		OutputFileType.FileType fileType = OutputFileType.extractFileType(FILENAME_COMBINED);
+		OutputFileType.FileType fileType = OutputFileType.extractFileType(mOutputFilename);
 
 		if (fileType == null || fileType == OutputFileType.FileType.UNKNOWN) {
 			LOGGER.warn("Either output file type \"" + fileType +
 				"\" could not be determined or its not supported. Abandoning merge operations.");
 		}
-		else if (fileType == OutputFileType.FileType.CSV) {
-			File file = new File(FILENAME_COMBINED);
+		else if (fileType == OutputFileType.FileType.CSV || fileType == OutputFileType.FileType.COLUMNAR) {
+			File file = new File(mOutputFilename);
 
 			if (file.exists() && !file.canWrite()) {
 				if (LOGGER.isWarnEnabled()) {
-					LOGGER.warn("Output file \"" + FILENAME_COMBINED +
+					LOGGER.warn("Output file \"" + mOutputFilename +
 						"\" is write protected. Abandoning merge operations.");
 				}
 			}
@@ -194,12 +538,81 @@ public class RecordMerger {
 		return false;
 	}
 
+	/**
+	 * Writes the merged table to a temporary file next to the output file and renames it over the
+	 * output file, so that readers of the output file never see a partially written file.
+	 */
+	private void writeAtomically(InternalTable mergedTable) throws IOException {
+		OutputFileType.FileType fileType = OutputFileType.extractFileType(mOutputFilename);
+
+		if (fileType == OutputFileType.FileType.CSV && OUTPUT_SHARDS > 1) {
+			ShardedCSVFileWriter shardedWriter = new ShardedCSVFileWriter(mOutputFilename, mergedTable,
+				OUTPUT_SHARDS, OUTPUT_INDEX_TYPE, OUTPUT_INDEX_BLOCK_SIZE);
+
+			shardedWriter.writeToFiles();
+
+			return;
+		}
+
+		File output = new File(mOutputFilename);
+		File tempOutput = OutputFiles.createTempFile(output);
+
+		try {
+			if (fileType == OutputFileType.FileType.COLUMNAR) {
+				ColumnarFileWriter columnarWriter =
+					new ColumnarFileWriter(tempOutput.getPath(), mergedTable, OUTPUT_COMPRESSION);
+
+				columnarWriter.writeToFile();
+			}
+			else {
+				CSVFileWriter csvWriter = new CSVFileWriter(tempOutput.getPath(), mergedTable,
+					OUTPUT_INDEX_TYPE, OUTPUT_INDEX_BLOCK_SIZE);
+
+				csvWriter.writeToFile();
+			}
+
+			OutputFiles.commit(tempOutput, output);
+		}
+		finally {
+			OutputFiles.discard(tempOutput);
+		}
+	}
+
+	/**
+	 * Caches parsed input tables in the provided cache and reuses tables already in it.
+	 *
+	 * @param tableCache The cache, or null to parse every input.
+	 */
+	public void setTableCache(TableCache tableCache) {
+		mTableCache = tableCache;
+	}
+
+	/**
+	 * @param driverFilename The name of the driver file, one of the files to merge, whose IDs are
+	 * the only ones merged, or null to merge the rows of all files.
+	 */
+	public void setDriverFile(String driverFilename) {
+		mDriverFilename = driverFilename;
+	}
+
+	/**
+	 * @param resume True to go on from the checkpoint of a previous merge of the same files, if any,
+	 * merging only the files it has not merged. Otherwise, false.
+	 */
+	public void setResume(boolean resume) {
+		mResume = resume;
+	}
+
 	/**
 	 * Merges tables and uses appropriate file write to write the merged table to file.
+	 *
+	 * @return True, if the merged table was written to the output file. Otherwise, false.
 	 */
-	private void mergeTablesAndOutputToFile() {
+	boolean mergeTablesAndOutputToFile() {
 		if (!validateOutputFileType()) {
-			return;
+			deleteStaleDelta();
+
+			return false;
 		}
 
 		InternalTable mergedTable = merge();
@@ -208,37 +621,129 @@ public class RecordMerger {
 			LOGGER.info("Merged table is empty.");
 		}
 		else {
-			CSVFileWriter csvWriter = new CSVFileWriter(FILENAME_COMBINED, mergedTable);
+			CSVDeltaWriter deltaWriter = OUTPUT_DELTA ? new CSVDeltaWriter(mOutputFilename, mergedTable) : null;
 
 			try {
-				csvWriter.writeToFile();
+				// the delta is renamed into place right after the output, so that they only disagree
+				// if the process dies in between
+				if (deltaWriter != null) {
+					deltaWriter.writeToTempFiles();
+				}
+
+				writeAtomically(mergedTable);
+
+				if (deltaWriter != null) {
+					deltaWriter.commit();
+				}
+
+				LOGGER.info("Merged files written to \"" + mOutputFilename + "\"");
 
-				LOGGER.info("Merged files written to \"" + FILENAME_COMBINED + "\"");
+				if (CHECKPOINT_INTERVAL > 0 || mResume) {
+					deleteCheckpoint();
+				}
+
+				return true;
 			}
 			catch (IOException e) {
 				if (LOGGER.isWarnEnabled()) {
-					LOGGER.warn("Error writing to output file \"" + FILENAME_COMBINED + "\"", e);
+					LOGGER.warn("Error writing to output file \"" + mOutputFilename + "\"", e);
 				}
 			}
+			finally {
+				discardDelta(deltaWriter);
+			}
+		}
+
+		deleteStaleDelta();
+
+		return false;
+	}
+
+	/**
+	 * Deletes the delta of the previous output, if deltas are written, which would otherwise be
+	 * applied again although no new output was written.
+	 */
+	private void deleteStaleDelta() {
+		if (!OUTPUT_DELTA) {
+			return;
+		}
+
+		try {
+			CSVDeltaWriter.deleteDelta(mOutputFilename);
+		}
+		catch (IOException e) {
+			if (LOGGER.isWarnEnabled()) {
+				LOGGER.warn("Failed to delete delta of previous output \"" + mOutputFilename + "\"", e);
+			}
+		}
+	}
+
+	private void discardDelta(CSVDeltaWriter deltaWriter) {
+		if (deltaWriter == null) {
+			return;
+		}
+
+		try {
+			deltaWriter.discard();
+		}
+		catch (IOException e) {
+			if (LOGGER.isWarnEnabled()) {
+				LOGGER.warn("Failed to delete temporary delta of \"" + mOutputFilename + "\"", e);
+			}
+		}
+	}
+
+	/**
+	 * Deletes the checkpoint of the merge, which is of no use once the output file is written.
+	 */
+	private void deleteCheckpoint() {
+		try {
+			MergeCheckpoint.delete(getCheckpointDir());
+		}
+		catch (IOException e) {
+			if (LOGGER.isWarnEnabled()) {
+				LOGGER.warn("Failed to delete checkpoint in \"" + getCheckpointDir() + "\"", e);
+			}
 		}
 	}
 
 	/**
 	 * Entry point of this test.
 	 *
-	 * @param args command line arguments: first.html and second.csv.
+	 * @param args command line arguments: optionally --resume, then first.html and second.csv.
 	 *
 	 * @throws Exception bad things had happened.
 	 */
 	public static void main(final String[] args) throws Exception {
-		if (args.length == 0) {
-			System.err.println("Usage: java RecordMerger file1 [ file2 [...] ]");
+		boolean resume = false;
+		String driverFilename = null;
+		int argIdx = 0;
+
+		for (; argIdx < args.length && args[argIdx].startsWith("--"); argIdx++) {
+			if ("--resume".equals(args[argIdx])) {
+				resume = true;
+			}
+			else if ("--driver".equals(args[argIdx]) && argIdx + 1 < args.length) {
+				driverFilename = args[++argIdx];
+			}
+			else {
+				break;
+			}
+		}
+
+		String[] filenames = Arrays.copyOfRange(args, argIdx, args.length);
+
+		if (filenames.length == 0 || filenames[0].startsWith("--")) {
+			System.err.println("Usage: java RecordMerger [ --resume ] [ --driver file ] file1 [ file2 [...] ]");
 
 			System.exit(1);
 		}
 
 		// Assuming there is sufficient memory to store the tables in memory
-		RecordMerger merger = new RecordMerger(args);
+		RecordMerger merger = new RecordMerger(filenames);
+
+		merger.setResume(resume);
+		merger.setDriverFile(driverFilename);
 
 		merger.mergeTablesAndOutputToFile();
 	}
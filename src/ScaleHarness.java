@@ -0,0 +1,683 @@
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Random;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Splitter;
+
+/**
+ * Runs the whole parse, merge and write flow on a synthetic dataset of production scale, and
+ * gates throughput and memory against a baseline.
+ *
+ * The dataset is generated deterministically from the properties below into the work directory,
+ * and reused as long as they do not change: files of CSV and HTML inputs sharing a controlled
+ * fraction of their IDs and of their columns, with integer, decimal, date, text and empty values.
+ *
+ * Every heap size is run in its own JVM, which merges the dataset with {@link RecordMerger} and
+ * reports its wall time, GC time and peak RSS (Linux only). The results are written to
+ * "results.csv" in the work directory, one row per heap size:
+ *
+ * 		heap, status, input_rows, output_rows, wall_ms, rows_per_sec, peak_rss_kb, gc_ms
+ *
+ * Given a baseline (a results file kept from a previous run), the harness exits with 2 if a run
+ * failed or merged a different number of rows than in the baseline, or if its throughput is lower,
+ * or its peak RSS or GC time higher, by more than the tolerance.
+ */
+public class ScaleHarness {
+	// Constants
+
+	/**
+	 * The Logger instance
+	 */
+	private static final Log LOGGER = LogFactory.getLog(ScaleHarness.class);
+
+	/**
+	 * Number of input files
+	 *
+	 * 8 by default
+	 */
+	private static final int NUM_FILES = Integer.getInteger("com.file.merger.scale.files", 8);
+
+	/**
+	 * Number of rows per input file
+	 *
+	 * 250000 by default
+	 */
+	private static final int ROWS_PER_FILE = Integer.getInteger("com.file.merger.scale.rowsPerFile", 250000);
+
+	/**
+	 * Number of columns per input file, besides the ID column
+	 *
+	 * 50 by default
+	 */
+	private static final int COLUMNS_PER_FILE = Integer.getInteger("com.file.merger.scale.columnsPerFile", 50);
+
+	/**
+	 * Fraction of the IDs of every input file that all input files share
+	 *
+	 * 0.5 by default
+	 */
+	private static final double ID_OVERLAP = Double.parseDouble(
+		System.getProperty("com.file.merger.scale.idOverlap", "0.5"));
+
+	/**
+	 * Fraction of the columns of every input file that all input files share
+	 *
+	 * 0.5 by default
+	 */
+	private static final double SCHEMA_OVERLAP = Double.parseDouble(
+		System.getProperty("com.file.merger.scale.schemaOverlap", "0.5"));
+
+	/**
+	 * Fraction of the input files that are HTML rather than CSV
+	 *
+	 * 0.25 by default
+	 */
+	private static final double HTML_FRACTION = Double.parseDouble(
+		System.getProperty("com.file.merger.scale.htmlFraction", "0.25"));
+
+	/**
+	 * Seed of the generated values
+	 *
+	 * 42 by default
+	 */
+	private static final long SEED = Long.getLong("com.file.merger.scale.seed", 42L);
+
+	/**
+	 * Comma separated maximum heap sizes of the runs, as given to -Xmx
+	 *
+	 * "2g,4g" by default
+	 */
+	private static final String HEAP_SIZES = System.getProperty("com.file.merger.scale.heaps", "2g,4g");
+
+	/**
+	 * Number of runs per heap size, of which the best result of every measure is kept
+	 *
+	 * 1 by default
+	 */
+	private static final int REPEATS = Integer.getInteger("com.file.merger.scale.repeats", 1);
+
+	/**
+	 * Relative regression of a measure against the baseline beyond which the harness fails
+	 *
+	 * 0.2 by default
+	 */
+	private static final double TOLERANCE = Double.parseDouble(
+		System.getProperty("com.file.merger.scale.tolerance", "0.2"));
+
+	/**
+	 * GC times below this many milliseconds are too noisy to be compared
+	 */
+	private static final long MIN_GATED_GC_MILLIS = 500;
+
+	private static final String CHILD_ARG = "--child";
+
+	private static final String RESULT_PREFIX = "RESULT ";
+
+	private static final String DATASET_FILENAME = "dataset.properties";
+
+	private static final String RESULTS_FILENAME = "results.csv";
+
+	private static final String RESULTS_HEADER =
+		"heap,status,input_rows,output_rows,wall_ms,rows_per_sec,peak_rss_kb,gc_ms";
+
+	private static final String STATUS_OK = "ok";
+
+	private static final String STATUS_FAILED = "failed";
+
+	private static final String ID_COLUMN_NAME = "ID";
+
+	/**
+	 * Prime larger than any row count, whose multiples modulo the row count visit every row once,
+	 * so that IDs are not generated in order.
+	 */
+	private static final long ROW_ORDER_PRIME = 2147483647L;
+
+	// Attributes
+
+	private final File mWorkDirectory;
+
+	// Constructors
+
+	public ScaleHarness(File workDirectory) {
+		mWorkDirectory = workDirectory;
+	}
+
+	// Operations
+
+	/**
+	 * Generates the dataset, unless it was generated with the same properties already.
+	 *
+	 * @return The input files.
+	 */
+	List<File> generateDataset() throws IOException {
+		Properties dataset = new Properties();
+
+		dataset.setProperty("files", String.valueOf(NUM_FILES));
+		dataset.setProperty("rowsPerFile", String.valueOf(ROWS_PER_FILE));
+		dataset.setProperty("columnsPerFile", String.valueOf(COLUMNS_PER_FILE));
+		dataset.setProperty("idOverlap", String.valueOf(ID_OVERLAP));
+		dataset.setProperty("schemaOverlap", String.valueOf(SCHEMA_OVERLAP));
+		dataset.setProperty("htmlFraction", String.valueOf(HTML_FRACTION));
+		dataset.setProperty("seed", String.valueOf(SEED));
+
+		int numHtmlFiles = (int) Math.round(HTML_FRACTION * NUM_FILES);
+		List<File> inputList = new ArrayList<File>(NUM_FILES);
+
+		for (int i = 0; i < NUM_FILES; i++) {
+			inputList.add(new File(mWorkDirectory, String.format("input-%03d.%s", i, (i < numHtmlFiles) ? "html" : "csv")));
+		}
+
+		File datasetFile = new File(mWorkDirectory, DATASET_FILENAME);
+
+		if (dataset.equals(readProperties(datasetFile))) {
+			LOGGER.info("Reusing dataset in \"" + mWorkDirectory + "\"");
+
+			return inputList;
+		}
+
+		if (!mWorkDirectory.isDirectory() && !mWorkDirectory.mkdirs()) {
+			throw new IOException("Unable to create work directory \"" + mWorkDirectory + "\"");
+		}
+
+		// the dataset is stale until all of its files are generated
+		Files.deleteIfExists(datasetFile.toPath());
+
+		for (int i = 0; i < NUM_FILES; i++) {
+			long start = System.currentTimeMillis();
+
+			generateFile(inputList.get(i), i, i < numHtmlFiles);
+
+			LOGGER.info("Generated \"" + inputList.get(i) + "\" in " + (System.currentTimeMillis() - start) + " ms");
+		}
+
+		OutputStreamWriter writer = new OutputStreamWriter(new FileOutputStream(datasetFile), Charsets.UTF_8);
+
+		try {
+			dataset.store(writer, "Synthetic dataset of the scale harness");
+		}
+		finally {
+			writer.close();
+		}
+
+		return inputList;
+	}
+
+	private void generateFile(File input, int fileIdx, boolean html) throws IOException {
+		Random random = new Random(SEED * 31 + fileIdx);
+		List<String> colNameList = getColumnNames(fileIdx, random);
+		int numSharedIds = (int) Math.round(ID_OVERLAP * ROWS_PER_FILE);
+		String[] row = new String[colNameList.size()];
+		Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(input), Charsets.UTF_8),
+			1024 * 1024);
+
+		try {
+			if (html) {
+				writer.write("<html><body><table>\n");
+			}
+
+			writeRow(writer, colNameList.toArray(row), html, true);
+
+			for (int i = 0; i < ROWS_PER_FILE; i++) {
+				long rowIdx = (i * ROW_ORDER_PRIME) % ROWS_PER_FILE;
+				// shared IDs come first, the others are unique to the file
+				long id = (rowIdx < numSharedIds) ? rowIdx : numSharedIds + (long) fileIdx * ROWS_PER_FILE + rowIdx;
+
+				row[0] = Long.toString(id);
+
+				for (int col = 1; col < row.length; col++) {
+					row[col] = generateValue(colNameList.get(col).hashCode(), random);
+				}
+
+				writeRow(writer, row, html, false);
+			}
+
+			if (html) {
+				writer.write("</table></body></html>\n");
+			}
+		}
+		finally {
+			writer.close();
+		}
+	}
+
+	/**
+	 * @return The ID column followed by the shared and own columns of the file, shuffled.
+	 */
+	private static List<String> getColumnNames(int fileIdx, Random random) {
+		int numSharedCols = (int) Math.round(SCHEMA_OVERLAP * COLUMNS_PER_FILE);
+		List<String> colNameList = new ArrayList<String>(COLUMNS_PER_FILE);
+
+		for (int i = 0; i < COLUMNS_PER_FILE; i++) {
+			colNameList.add((i < numSharedCols) ? "shared_" + i : "file" + fileIdx + "_" + i);
+		}
+
+		Collections.shuffle(colNameList, random);
+		colNameList.add(0, ID_COLUMN_NAME);
+
+		return colNameList;
+	}
+
+	/**
+	 * @return An integer, decimal, date or text value, depending on the column, or sometimes an
+	 * empty value.
+	 */
+	private static String generateValue(int colHash, Random random) {
+		if (random.nextInt(20) == 0) {
+			return "";
+		}
+
+		switch ((colHash & 0x7FFFFFFF) % 4) {
+		case 0:
+			return Integer.toString(random.nextInt(1000000));
+		case 1:
+			int cents = random.nextInt(10000000);
+
+			return (cents / 100) + "." + ((cents % 100 < 10) ? "0" : "") + (cents % 100);
+		case 2:
+			return String.format("%04d-%02d-%02d", 2000 + random.nextInt(25), 1 + random.nextInt(12),
+				1 + random.nextInt(28));
+		default:
+			return "text " + Integer.toString(random.nextInt(), 36);
+		}
+	}
+
+	private static void writeRow(Writer writer, String[] row, boolean html, boolean header) throws IOException {
+		if (html) {
+			writer.write("<tr>");
+
+			for (String value : row) {
+				writer.write(header ? "<th>" : "<td>");
+				writer.write(value);
+				writer.write(header ? "</th>" : "</td>");
+			}
+
+			writer.write("</tr>\n");
+
+			return;
+		}
+
+		for (int i = 0; i < row.length; i++) {
+			if (i > 0) {
+				writer.write(',');
+			}
+
+			writer.write(row[i]);
+		}
+
+		writer.write('\n');
+	}
+
+	/**
+	 * Merges the inputs once per heap size and repeat, in a JVM of its own.
+	 *
+	 * @return The best result of every heap size.
+	 */
+	Map<String, Result> runAll(List<File> inputList) throws IOException, InterruptedException {
+		Map<String, Result> resultByHeapMap = new LinkedHashMap<String, Result>();
+
+		for (String heap : Splitter.on(',').trimResults().omitEmptyStrings().split(HEAP_SIZES)) {
+			Result best = null;
+
+			for (int i = 0; i < REPEATS; i++) {
+				Result result = run(heap, inputList);
+
+				LOGGER.info("Run " + (i + 1) + " of " + REPEATS + " with " + heap + " heap: " + result);
+
+				best = (best == null) ? result : best.best(result);
+			}
+
+			resultByHeapMap.put(heap, best);
+		}
+
+		return resultByHeapMap;
+	}
+
+	private Result run(String heap, List<File> inputList) throws IOException, InterruptedException {
+		List<String> command = new ArrayList<String>();
+
+		command.add(new File(System.getProperty("java.home"), "bin" + File.separator + "java").getPath());
+		command.add("-Xmx" + heap);
+		command.add("-cp");
+		command.add(System.getProperty("java.class.path"));
+
+		// the merge is configured by the same properties as this harness
+		for (Map.Entry<Object, Object> property : System.getProperties().entrySet()) {
+			if (property.getKey().toString().startsWith("com.file.merger.")) {
+				command.add("-D" + property.getKey() + "=" + property.getValue());
+			}
+		}
+
+		command.add(ScaleHarness.class.getName());
+		command.add(CHILD_ARG);
+		command.add(new File(mWorkDirectory, "combined.csv").getPath());
+
+		for (File input : inputList) {
+			command.add(input.getPath());
+		}
+
+		Process process = new ProcessBuilder(command).redirectErrorStream(true).start();
+		BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream(), Charsets.UTF_8));
+		String resultLine = null;
+
+		try {
+			String line;
+
+			while ((line = reader.readLine()) != null) {
+				if (line.startsWith(RESULT_PREFIX)) {
+					resultLine = line.substring(RESULT_PREFIX.length());
+				}
+				else if (LOGGER.isDebugEnabled()) {
+					LOGGER.debug(line);
+				}
+			}
+		}
+		finally {
+			reader.close();
+		}
+
+		long inputRows = (long) NUM_FILES * ROWS_PER_FILE;
+
+		if (process.waitFor() != 0 || resultLine == null) {
+			return new Result(STATUS_FAILED, inputRows, -1, -1, -1, -1);
+		}
+
+		List<String> valueList = Splitter.on(',').splitToList(resultLine);
+
+		return new Result(STATUS_OK, inputRows, Long.parseLong(valueList.get(0)),
+			Long.parseLong(valueList.get(1)), Long.parseLong(valueList.get(2)), Long.parseLong(valueList.get(3)));
+	}
+
+	/**
+	 * Merges the inputs into the output file, and prints the measures of the merge.
+	 */
+	private static void runChild(String outputFilename, List<String> inputList) throws IOException {
+		long start = System.nanoTime();
+		RecordMerger merger = new RecordMerger(outputFilename, RecordMerger.ID_COLUMN_NAME,
+			inputList.toArray(new String[inputList.size()]));
+
+		if (!merger.mergeTablesAndOutputToFile()) {
+			System.exit(1);
+		}
+
+		long wallMillis = (System.nanoTime() - start) / 1000000;
+		long gcMillis = 0;
+
+		for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+			gcMillis += Math.max(0, gc.getCollectionTime());
+		}
+
+		System.out.println(RESULT_PREFIX + countRows(outputFilename) + "," + wallMillis + "," +
+			getPeakRssKb() + "," + gcMillis);
+	}
+
+	/**
+	 * @return The number of data rows of the CSV output, whose generated values hold no line
+	 * breaks.
+	 */
+	private static long countRows(String outputFilename) throws IOException {
+		BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(outputFilename),
+			Charsets.UTF_8));
+		long numLines = 0;
+
+		try {
+			while (reader.readLine() != null) {
+				numLines++;
+			}
+		}
+		finally {
+			reader.close();
+		}
+
+		return Math.max(0, numLines - 1);
+	}
+
+	/**
+	 * @return The peak resident set size of this process in KB, or -1 if it is not known.
+	 */
+	private static long getPeakRssKb() {
+		try {
+			for (String line : Files.readAllLines(new File("/proc/self/status").toPath(), Charsets.UTF_8)) {
+				if (line.startsWith("VmHWM:")) {
+					return Long.parseLong(line.substring("VmHWM:".length()).replace("kB", "").trim());
+				}
+			}
+		}
+		catch (IOException e) {
+			// not Linux
+		}
+
+		return -1;
+	}
+
+	void writeResults(Map<String, Result> resultByHeapMap) throws IOException {
+		Writer writer = new OutputStreamWriter(new FileOutputStream(new File(mWorkDirectory, RESULTS_FILENAME)),
+			Charsets.UTF_8);
+
+		try {
+			writer.write(RESULTS_HEADER + "\n");
+
+			for (Map.Entry<String, Result> resultEntry : resultByHeapMap.entrySet()) {
+				writer.write(resultEntry.getKey() + "," + resultEntry.getValue().toCsv() + "\n");
+			}
+		}
+		finally {
+			writer.close();
+		}
+	}
+
+	/**
+	 * @return The results of a results file, indexed by heap size.
+	 */
+	static Map<String, Result> readResults(File resultsFile) throws IOException {
+		Map<String, Result> resultByHeapMap = new HashMap<String, Result>();
+		BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(resultsFile),
+			Charsets.UTF_8));
+
+		try {
+			String line = reader.readLine();
+
+			if (!RESULTS_HEADER.equals(line)) {
+				throw new IllegalStateException("\"" + resultsFile + "\" is not a results file");
+			}
+
+			while ((line = reader.readLine()) != null) {
+				List<String> valueList = Splitter.on(',').splitToList(line);
+
+				resultByHeapMap.put(valueList.get(0), new Result(valueList.get(1),
+					Long.parseLong(valueList.get(2)), Long.parseLong(valueList.get(3)),
+					Long.parseLong(valueList.get(4)), Long.parseLong(valueList.get(6)),
+					Long.parseLong(valueList.get(7))));
+			}
+		}
+		finally {
+			reader.close();
+		}
+
+		return resultByHeapMap;
+	}
+
+	/**
+	 * @return The regressions of the results against the baseline, empty if there are none.
+	 */
+	static List<String> compare(Map<String, Result> resultByHeapMap, Map<String, Result> baselineByHeapMap) {
+		List<String> regressionList = new ArrayList<String>();
+
+		for (Map.Entry<String, Result> resultEntry : resultByHeapMap.entrySet()) {
+			String heap = resultEntry.getKey();
+			Result result = resultEntry.getValue();
+			Result baseline = baselineByHeapMap.get(heap);
+
+			if (baseline == null || !STATUS_OK.equals(baseline.mStatus)) {
+				continue;
+			}
+			else if (!STATUS_OK.equals(result.mStatus)) {
+				regressionList.add(heap + ": merge failed");
+
+				continue;
+			}
+
+			if (result.mOutputRows != baseline.mOutputRows) {
+				regressionList.add(heap + ": " + result.mOutputRows + " output rows instead of " + baseline.mOutputRows);
+			}
+
+			if (result.getRowsPerSecond() < baseline.getRowsPerSecond() * (1 - TOLERANCE)) {
+				regressionList.add(heap + ": " + result.getRowsPerSecond() + " rows/s instead of " +
+					baseline.getRowsPerSecond());
+			}
+
+			if (result.mPeakRssKb > 0 && baseline.mPeakRssKb > 0 &&
+					result.mPeakRssKb > baseline.mPeakRssKb * (1 + TOLERANCE)) {
+				regressionList.add(heap + ": peak RSS " + result.mPeakRssKb + " KB instead of " + baseline.mPeakRssKb);
+			}
+
+			if (result.mGcMillis > MIN_GATED_GC_MILLIS && result.mGcMillis > baseline.mGcMillis * (1 + TOLERANCE)) {
+				regressionList.add(heap + ": GC time " + result.mGcMillis + " ms instead of " + baseline.mGcMillis);
+			}
+		}
+
+		return regressionList;
+	}
+
+	private static Properties readProperties(File file) throws IOException {
+		Properties properties = new Properties();
+
+		if (file.isFile()) {
+			InputStreamReader reader = new InputStreamReader(new FileInputStream(file), Charsets.UTF_8);
+
+			try {
+				properties.load(reader);
+			}
+			catch (IllegalArgumentException e) {
+				// malformed, handled like a missing file
+				properties.clear();
+			}
+			finally {
+				reader.close();
+			}
+		}
+
+		return properties;
+	}
+
+	/**
+	 * Entry point of the scale harness.
+	 *
+	 * @param args command line arguments: the work directory, and optionally the baseline results
+	 * file.
+	 *
+	 * @throws Exception bad things had happened.
+	 */
+	public static void main(final String[] args) throws Exception {
+		if (args.length > 2 && CHILD_ARG.equals(args[0])) {
+			runChild(args[1], Arrays.asList(args).subList(2, args.length));
+
+			return;
+		}
+		else if (args.length < 1 || args.length > 2) {
+			System.err.println("Usage: java ScaleHarness workDirectory [ baselineResults.csv ]");
+
+			System.exit(1);
+		}
+
+		ScaleHarness harness = new ScaleHarness(new File(args[0]));
+		List<File> inputList = harness.generateDataset();
+		Map<String, Result> resultByHeapMap = harness.runAll(inputList);
+
+		harness.writeResults(resultByHeapMap);
+
+		LOGGER.info("Results written to \"" + new File(args[0], RESULTS_FILENAME) + "\"");
+
+		if (args.length == 2) {
+			List<String> regressionList = compare(resultByHeapMap, readResults(new File(args[1])));
+
+			for (String regression : regressionList) {
+				LOGGER.warn("Regression " + regression);
+			}
+
+			if (!regressionList.isEmpty()) {
+				System.exit(2);
+			}
+
+			LOGGER.info("No regression against \"" + args[1] + "\"");
+		}
+	}
+
+	/**
+	 * Measures of a merge.
+	 */
+	static class Result {
+		private final String mStatus;
+
+		private final long mInputRows;
+
+		private final long mOutputRows;
+
+		private final long mWallMillis;
+
+		private final long mPeakRssKb;
+
+		private final long mGcMillis;
+
+		Result(String status, long inputRows, long outputRows, long wallMillis, long peakRssKb, long gcMillis) {
+			mStatus = status;
+			mInputRows = inputRows;
+			mOutputRows = outputRows;
+			mWallMillis = wallMillis;
+			mPeakRssKb = peakRssKb;
+			mGcMillis = gcMillis;
+		}
+
+		long getRowsPerSecond() {
+			return (mWallMillis > 0) ? mInputRows * 1000 / mWallMillis : 0;
+		}
+
+		/**
+		 * @return The best of every measure of this result and the other result.
+		 */
+		Result best(Result other) {
+			if (!STATUS_OK.equals(other.mStatus)) {
+				return this;
+			}
+			else if (!STATUS_OK.equals(mStatus)) {
+				return other;
+			}
+
+			return new Result(mStatus, mInputRows, mOutputRows, Math.min(mWallMillis, other.mWallMillis),
+				Math.min(mPeakRssKb, other.mPeakRssKb), Math.min(mGcMillis, other.mGcMillis));
+		}
+
+		String toCsv() {
+			return mStatus + "," + mInputRows + "," + mOutputRows + "," + mWallMillis + "," +
+				getRowsPerSecond() + "," + mPeakRssKb + "," + mGcMillis;
+		}
+
+		@Override
+		public String toString() {
+			return STATUS_OK.equals(mStatus) ?
+				mOutputRows + " rows in " + mWallMillis + " ms (" + getRowsPerSecond() + " rows/s), peak RSS " +
+					mPeakRssKb + " KB, GC " + mGcMillis + " ms" : mStatus;
+		}
+	}
+}
@@ -1,11 +1,17 @@
 package com.file.io;
 
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
+import com.file.transform.IdFilter;
+import com.file.transform.InternalTable;
+import com.file.type.InputFileType;
 import com.google.common.base.Strings;
 
 /**
@@ -26,6 +32,28 @@ public class AbstractFileReader {
 	 */
 	protected final String mIdColumnName;
 
+	/**
+	 * Number of rows sampled to infer the types of the columns, 0 to keep all columns as text.
+	 */
+	private int mTypeSampleSize;
+
+	/**
+	 * Directory of the files of rejected rows, null to only count rejected rows.
+	 */
+	private File mRejectDirectory;
+
+	/**
+	 * Maximum number of rejected rows written per input.
+	 */
+	private int mMaxRejects = RejectFileWriter.DEFAULT_MAX_REJECTS;
+
+	// Associations
+
+	/**
+	 * Filter of the IDs of the rows kept, null to keep rows of any ID.
+	 */
+	private IdFilter mIdFilter;
+
 	// Constructors
 
 	public AbstractFileReader(String idColumnName) {
@@ -59,7 +87,92 @@ public class AbstractFileReader {
 		return input;
 	}
 
+	/**
+	 * Opens the file, decompressing it as it is read if it is compressed.
+	 */
+	public InputStream openInputStream(File input) throws IOException {
+		InputStream in = new FileInputStream(input);
+
+		if (InputFileType.isCompressed(input.getName())) {
+			return new ParallelGzipInputStream(in);
+		}
+
+		return in;
+	}
+
 	public String getIdColumnName() {
 		return mIdColumnName;
 	}
+
+	public void setTypeSampleSize(int typeSampleSize) {
+		mTypeSampleSize = typeSampleSize;
+	}
+
+	/**
+	 * @param rejectDirectory Directory of the files of rejected rows, or null to only count
+	 * rejected rows.
+	 */
+	public void setRejectDirectory(File rejectDirectory) {
+		mRejectDirectory = rejectDirectory;
+	}
+
+	public void setMaxRejects(int maxRejects) {
+		mMaxRejects = maxRejects;
+	}
+
+	/**
+	 * @param idFilter The filter of the IDs of the rows kept, or null to keep rows of any ID. Rows
+	 * of other IDs are dropped as they are read.
+	 */
+	public void setIdFilter(IdFilter idFilter) {
+		mIdFilter = idFilter;
+	}
+
+	/**
+	 * Prepares the new table of the input: sets its ID filter, and hands the rows it rejects to a
+	 * new reject writer.
+	 */
+	protected RejectFileWriter prepareTable(String filename, InternalTable table) {
+		table.setIdFilter(mIdFilter);
+
+		RejectFileWriter rejectWriter = new RejectFileWriter(filename,
+			new ArrayList<String>(table.getColumnNameSet()), mRejectDirectory, mMaxRejects);
+
+		table.setRejectSink(rejectWriter);
+
+		return rejectWriter;
+	}
+
+	/**
+	 * Detaches the ID filter and the reject writer from the table once the input is read, and
+	 * closes the reject writer.
+	 */
+	protected void closeRejectWriter(InternalTable table, RejectFileWriter rejectWriter) throws IOException {
+		if (rejectWriter != null) {
+			table.setIdFilter(null);
+			table.setRejectSink(null);
+			rejectWriter.close();
+		}
+	}
+
+	/**
+	 * Deletes what is left of the reject file of an input that could not be read.
+	 */
+	protected void discardRejectWriter(RejectFileWriter rejectWriter) throws IOException {
+		if (rejectWriter != null) {
+			rejectWriter.discard();
+		}
+	}
+
+	/**
+	 * Infers the types of the columns of the table once it holds the sample, or at the end of the
+	 * input if the table is smaller than the sample. Does nothing if type inference is off or the
+	 * types are inferred already.
+	 */
+	protected void inferColumnTypes(InternalTable table, boolean endOfInput) {
+		if (table != null && mTypeSampleSize > 0 && !table.isColumnTypesInferred() &&
+				(endOfInput || table.getRowCount() >= mTypeSampleSize)) {
+			table.inferColumnTypes();
+		}
+	}
 }
@@ -0,0 +1,329 @@
+package com.file.io;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.nio.file.Files;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import com.file.transform.InternalTable;
+import com.file.transform.RowKey;
+import com.google.common.base.Charsets;
+import com.google.common.collect.Iterables;
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+
+import au.com.bytecode.opencsv.CSVWriter;
+
+/**
+ * Writes the changes of a merged table since the previous output: the delta file lists the rows
+ * inserted, updated and deleted since then, so that consumers of the output can apply them instead
+ * of reloading the whole output.
+ *
+ * For an output file "combined.csv", the content hash of every row written is kept in the sidecar
+ * "combined.csv.hashes", and the delta is written to "combined.csv.delta", a CSV file with the
+ * columns of the output preceded by an "op" column: "I" (inserted) or "U" (updated) rows hold
+ * their new values, "D" (deleted) rows hold their ID values only. Rows are compared as they are
+ * written, so a change of the columns of the output updates every row. The first delta, without
+ * previous hashes, lists every row as inserted.
+ *
+ * Hashes layout (big endian), in ascending ID order:
+ *
+ * 		magic (int), version (int)
+ * 		row count x [key length (int), encoded key bytes (see {@link RowKey}), row hash (long)]
+ *
+ * The delta and hashes are written to temporary files, and renamed into place right after the
+ * output is, so they agree with the output unless the process dies between the renames. If no
+ * output is written, the delta of the previous output is deleted, so that it is not applied again,
+ * and the hashes are kept: they still describe the output in place, and the next delta is
+ * compared with them.
+ */
+public class CSVDeltaWriter {
+	// Constants
+
+	/**
+	 * The Logger instance.
+	 */
+	private static final Log LOGGER = LogFactory.getLog(CSVDeltaWriter.class);
+
+	public static final String DELTA_FILE_SUFFIX = ".delta";
+
+	public static final String HASHES_FILE_SUFFIX = ".hashes";
+
+	private static final int MAGIC = 0x43444348; // "CDCH"
+
+	private static final int VERSION = 1;
+
+	private static final String OP_COLUMN_NAME = "op";
+
+	private static final String INSERTED = "I";
+
+	private static final String UPDATED = "U";
+
+	private static final String DELETED = "D";
+
+	private static final HashFunction ROW_HASH_FUNCTION = Hashing.murmur3_128();
+
+	// Attributes
+
+	private final File mDelta;
+
+	private final File mHashes;
+
+	private File mTempDelta;
+
+	private File mTempHashes;
+
+	private int mNumInserted;
+
+	private int mNumUpdated;
+
+	private int mNumDeleted;
+
+	/**
+	 * Key and hash of the next row of the previous hashes, the key being null at their end.
+	 */
+	private byte[] mPreviousKey;
+
+	private long mPreviousHash;
+
+	// Associations
+
+	private final InternalTable mTable;
+
+	// Constructors
+
+	public CSVDeltaWriter(String outputFilename, InternalTable table) {
+		mDelta = new File(outputFilename + DELTA_FILE_SUFFIX);
+		mHashes = new File(outputFilename + HASHES_FILE_SUFFIX);
+		mTable = table;
+	}
+
+	// Operations
+
+	/**
+	 * Compares the table with the hashes of the previous output, and writes the delta and the new
+	 * hashes to temporary files.
+	 */
+	public void writeToTempFiles() throws IOException {
+		mTempDelta = OutputFiles.createTempFile(mDelta);
+		mTempHashes = OutputFiles.createTempFile(mHashes);
+
+		String[] colNames = Iterables.toArray(mTable.getColumnNameSet(), String.class);
+		String[] deltaRow = new String[colNames.length + 1];
+		int[] idColIdxs = mTable.getIdColumnIndexes();
+		DataInputStream previous = openPreviousHashes();
+		DataOutputStream hashes = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(mTempHashes)));
+		CSVWriter delta = new CSVWriter(new OutputStreamWriter(new FileOutputStream(mTempDelta), Charsets.UTF_8));
+
+		try {
+			hashes.writeInt(MAGIC);
+			hashes.writeInt(VERSION);
+
+			deltaRow[0] = OP_COLUMN_NAME;
+			System.arraycopy(colNames, 0, deltaRow, 1, colNames.length);
+			delta.writeNext(deltaRow);
+
+			Iterator<Map.Entry<RowKey, List<String>>> rowEntryItr = mTable.getRowEntryItr();
+
+			readPrevious(previous);
+
+			while (rowEntryItr.hasNext()) {
+				Map.Entry<RowKey, List<String>> rowEntry = rowEntryItr.next();
+				byte[] key = rowEntry.getKey().toByteArray();
+				List<String> row = rowEntry.getValue();
+				long hash = hash(row);
+
+				// rows of the previous output before this one were deleted
+				while (mPreviousKey != null && compareToPrevious(key) > 0) {
+					writeDeleted(delta, deltaRow, idColIdxs);
+					readPrevious(previous);
+				}
+
+				if (mPreviousKey != null && compareToPrevious(key) == 0) {
+					if (mPreviousHash != hash) {
+						writeChanged(delta, deltaRow, UPDATED, row);
+						mNumUpdated++;
+					}
+
+					readPrevious(previous);
+				}
+				else {
+					writeChanged(delta, deltaRow, INSERTED, row);
+					mNumInserted++;
+				}
+
+				hashes.writeInt(key.length);
+				hashes.write(key);
+				hashes.writeLong(hash);
+			}
+
+			while (mPreviousKey != null) {
+				writeDeleted(delta, deltaRow, idColIdxs);
+				readPrevious(previous);
+			}
+		}
+		finally {
+			delta.close();
+			hashes.close();
+
+			if (previous != null) {
+				previous.close();
+			}
+		}
+
+		if (LOGGER.isDebugEnabled()) {
+			LOGGER.debug("Delta of \"" + mDelta + "\": " + mNumInserted + " inserted, " + mNumUpdated +
+				" updated and " + mNumDeleted + " deleted rows.");
+		}
+	}
+
+	/**
+	 * Renames the temporary delta and hashes into place.
+	 */
+	public void commit() throws IOException {
+		OutputFiles.commit(mTempDelta, mDelta);
+		OutputFiles.commit(mTempHashes, mHashes);
+	}
+
+	/**
+	 * Deletes the delta of the output file, if any, e.g. when no new output is written.
+	 */
+	public static void deleteDelta(String outputFilename) throws IOException {
+		Files.deleteIfExists(new File(outputFilename + DELTA_FILE_SUFFIX).toPath());
+	}
+
+	/**
+	 * Deletes what is left of the temporary delta and hashes.
+	 */
+	public void discard() throws IOException {
+		if (mTempDelta != null) {
+			OutputFiles.discard(mTempDelta);
+		}
+
+		if (mTempHashes != null) {
+			OutputFiles.discard(mTempHashes);
+		}
+	}
+
+	/**
+	 * @return The hashes of the previous output, positioned at the first row, or null if there are
+	 * none.
+	 */
+	private DataInputStream openPreviousHashes() throws IOException {
+		if (!mHashes.isFile()) {
+			return null;
+		}
+
+		DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(mHashes)));
+
+		try {
+			if (in.readInt() == MAGIC && in.readInt() == VERSION) {
+				return in;
+			}
+		}
+		catch (EOFException e) {
+			// too short, handled like an unknown file
+		}
+
+		in.close();
+
+		if (LOGGER.isWarnEnabled()) {
+			LOGGER.warn("Ignoring \"" + mHashes + "\" of unknown format. Every row is taken as inserted.");
+		}
+
+		return null;
+	}
+
+	/**
+	 * Reads the next key and hash of the previous hashes, the key being null at their end.
+	 */
+	private void readPrevious(DataInputStream previous) throws IOException {
+		mPreviousKey = null;
+
+		if (previous == null) {
+			return;
+		}
+
+		int length;
+
+		try {
+			length = previous.readInt();
+		}
+		catch (EOFException e) {
+			return;
+		}
+
+		byte[] key = new byte[length];
+
+		previous.readFully(key);
+
+		mPreviousHash = previous.readLong();
+		mPreviousKey = key;
+	}
+
+	private int compareToPrevious(byte[] key) {
+		return RowKey.compare(key, 0, key.length, mPreviousKey, 0, mPreviousKey.length);
+	}
+
+	/**
+	 * @return The hash of the values of the row, which tells null and empty values apart as they
+	 * are written differently.
+	 */
+	private static long hash(List<String> row) {
+		Hasher hasher = ROW_HASH_FUNCTION.newHasher();
+
+		for (int i = 0; i < row.size(); i++) {
+			String value = row.get(i);
+
+			if (value == null) {
+				hasher.putInt(-1);
+			}
+			else {
+				hasher.putInt(value.length()).putUnencodedChars(value);
+			}
+		}
+
+		return hasher.hash().asLong();
+	}
+
+	private static void writeChanged(CSVWriter delta, String[] deltaRow, String op, List<String> row) {
+		deltaRow[0] = op;
+
+		for (int i = 0; i < row.size(); i++) {
+			deltaRow[i + 1] = row.get(i);
+		}
+
+		delta.writeNext(deltaRow);
+	}
+
+	private void writeDeleted(CSVWriter delta, String[] deltaRow, int[] idColIdxs) {
+		String[] idValues = RowKey.fromByteArray(mPreviousKey).getValues();
+
+		deltaRow[0] = DELETED;
+
+		for (int i = 1; i < deltaRow.length; i++) {
+			deltaRow[i] = null;
+		}
+
+		for (int i = 0; i < idColIdxs.length && i < idValues.length; i++) {
+			deltaRow[idColIdxs[i] + 1] = idValues[i];
+		}
+
+		delta.writeNext(deltaRow);
+		mNumDeleted++;
+	}
+}
@@ -1,16 +1,19 @@
 package com.file.io;
 
 import java.io.File;
-import java.io.FileReader;
 import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.List;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
 import com.file.transform.InternalTable;
+import com.file.transform.RowBuffer;
+import com.file.transform.RowSink;
+import com.file.type.CSVScannerType;
 
 import au.com.bytecode.opencsv.CSVReader;
 
@@ -25,10 +28,24 @@ public class CSVFileReader extends AbstractFileReader {
 	 */
 	private static final Log LOGGER = LogFactory.getLog(CSVFileReader.class);
 
+	// Attributes
+
+	/**
+	 * Kernel used to scan the input for structural characters, or NONE to parse the input with
+	 * CSVReader only.
+	 */
+	private final CSVScannerType.ScannerType mScannerType;
+
 	// Constructors
 
 	public CSVFileReader(String idColumnName) {
+		this(idColumnName, CSVScannerType.ScannerType.NONE);
+	}
+
+	public CSVFileReader(String idColumnName, CSVScannerType.ScannerType scannerType) {
 		super(idColumnName);
+
+		mScannerType = (scannerType != null) ? scannerType : CSVScannerType.ScannerType.NONE;
 	}
 
 	// Operations
@@ -37,10 +54,50 @@ public class CSVFileReader extends AbstractFileReader {
 		File input = getFile(filename);
 
 		if (input != null) {
-			CSVReader reader = new CSVReader(new FileReader(input));
-			String [] nextDataRow = reader.readNext();
-			InternalTable internalTable = null;
+			Charset charset = Charset.defaultCharset();
+
+			if (mScannerType != CSVScannerType.ScannerType.NONE && CSVRecordScanner.isSupported(charset)) {
+				CSVRecordScanner scanner = new CSVRecordScanner(openInputStream(input), charset,
+					mScannerType == CSVScannerType.ScannerType.SWAR);
+
+				try {
+					return process(filename, input, charset, scanner);
+				}
+				finally {
+					scanner.close();
+				}
+			}
+
+			return process(filename, input, charset, (RejectFileWriter) null);
+		}
+
+		return null;
+	}
+
+	/**
+	 * Parses the input with CSVReader.
+	 *
+	 * @param previousRejectWriter The reject writer of an earlier read of the input, or null.
+	 */
+	private InternalTable process(String filename, File input, Charset charset,
+			RejectFileWriter previousRejectWriter) throws IOException {
+		CSVReader reader = new CSVReader(new InputStreamReader(openInputStream(input), charset));
 
+		try {
+			return process(filename, reader, previousRejectWriter);
+		}
+		finally {
+			reader.close();
+		}
+	}
+
+	private InternalTable process(String filename, CSVReader reader, RejectFileWriter previousRejectWriter)
+			throws IOException {
+		String [] nextDataRow = reader.readNext();
+		InternalTable internalTable = null;
+		RejectFileWriter rejectWriter = null;
+
+		try {
 			if (nextDataRow != null) {
 				List<String> dataList = new ArrayList<String>(nextDataRow.length);
 
@@ -49,24 +106,84 @@ public class CSVFileReader extends AbstractFileReader {
 				}
 
 				internalTable = new InternalTable(dataList, getIdColumnName());
+				rejectWriter = prepareTable(filename, internalTable);
+
+				if (previousRejectWriter != null) {
+					rejectWriter.continueLogging(previousRejectWriter);
+				}
 			}
 
+			RowBuffer rowBuffer = new RowBuffer();
+
 			while ((nextDataRow = reader.readNext()) != null) {
-				try {
-					internalTable.addData(Arrays.asList(nextDataRow));
-				}
-				catch (IllegalStateException e) {
-					if (LOGGER.isWarnEnabled()) {
-						LOGGER.warn("Failed to process file \"" + filename + "\". Skipping file.", e);
-					}
+				rowBuffer.setAll(nextDataRow);
 
-					throw e;
-				}
+				addRow(filename, internalTable, rowBuffer);
+				inferColumnTypes(internalTable, false);
 			}
 
+			inferColumnTypes(internalTable, true);
+			closeRejectWriter(internalTable, rejectWriter);
+
 			return internalTable;
 		}
+		finally {
+			discardRejectWriter(rejectWriter);
+		}
+	}
 
-		return null;
+	/**
+	 * Parses the input with the scanner, or with CSVReader if the scanner does not support its
+	 * syntax.
+	 */
+	private InternalTable process(String filename, File input, Charset charset, CSVRecordScanner scanner)
+			throws IOException {
+		RowBuffer rowBuffer = new RowBuffer();
+		InternalTable internalTable = null;
+		RejectFileWriter rejectWriter = null;
+
+		try {
+			if (scanner.readNext(rowBuffer)) {
+				internalTable = new InternalTable(rowBuffer, getIdColumnName());
+				rejectWriter = prepareTable(filename, internalTable);
+			}
+
+			while (scanner.readNext(rowBuffer)) {
+				addRow(filename, internalTable, rowBuffer);
+				inferColumnTypes(internalTable, false);
+			}
+
+			inferColumnTypes(internalTable, true);
+			closeRejectWriter(internalTable, rejectWriter);
+
+			return internalTable;
+		}
+		catch (CSVRecordScanner.UnsupportedSyntaxException e) {
+			if (LOGGER.isDebugEnabled()) {
+				LOGGER.debug("Parsing \"" + filename + "\" with CSVReader: " + e.getMessage());
+			}
+
+			scanner.close();
+
+			// start over with CSVReader, which parses anything the scanner does not, and rejects the
+			// rows rejected so far again, but without logging them again
+			return process(filename, input, charset, rejectWriter);
+		}
+		finally {
+			discardRejectWriter(rejectWriter);
+		}
+	}
+
+	private static void addRow(String filename, RowSink sink, List<String> dataRow) {
+		try {
+			sink.addRow(dataRow);
+		}
+		catch (IllegalStateException e) {
+			if (LOGGER.isWarnEnabled()) {
+				LOGGER.warn("Failed to process file \"" + filename + "\". Skipping file.", e);
+			}
+
+			throw e;
+		}
 	}
 }
@@ -1,15 +1,23 @@
 package com.file.io;
 
+import java.io.BufferedOutputStream;
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.io.StringWriter;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
 import com.file.transform.InternalTable;
+import com.file.transform.RowKey;
+import com.file.type.OutputIndexType;
+import com.google.common.base.Charsets;
 import com.google.common.collect.Iterables;
 
 import au.com.bytecode.opencsv.CSVWriter;
@@ -26,15 +34,67 @@ public class CSVFileWriter {
 
 	private String mOutputFilename;
 
+	/**
+	 * Type of the sidecar index written alongside the output file.
+	 */
+	private OutputIndexType.IndexType mIndexType;
+
+	/**
+	 * Number of rows per index entry for a sparse index.
+	 */
+	private int mIndexBlockSize;
+
+	/**
+	 * Number of rows written.
+	 */
+	private int mNumRows;
+
 	// Associations
 
 	private InternalTable mTable;
 
+	/**
+	 * Key of the first row to write, inclusive, null to start at the first row of the table.
+	 */
+	private RowKey mFromKey;
+
+	/**
+	 * Key after the last row to write, exclusive, null to end at the last row of the table.
+	 */
+	private RowKey mToKey;
+
+	/**
+	 * Keys of the first and last rows written.
+	 */
+	private RowKey mFirstKey;
+
+	private RowKey mLastKey;
+
 	// Constructors
 
 	public CSVFileWriter(String filename, InternalTable table) {
+		this(filename, table, OutputIndexType.IndexType.NONE, 1);
+	}
+
+	public CSVFileWriter(String filename, InternalTable table, OutputIndexType.IndexType indexType,
+			int indexBlockSize) {
+		this(filename, table, null, null, indexType, indexBlockSize);
+	}
+
+	/**
+	 * Writes only the rows of the table in a key range.
+	 *
+	 * @param fromKey Key of the first row, inclusive, or null to start at the first row.
+	 * @param toKey Key after the last row, exclusive, or null to end at the last row.
+	 */
+	public CSVFileWriter(String filename, InternalTable table, RowKey fromKey, RowKey toKey,
+			OutputIndexType.IndexType indexType, int indexBlockSize) {
 		mOutputFilename = filename;
 		mTable = table;
+		mFromKey = fromKey;
+		mToKey = toKey;
+		mIndexType = (indexType != null) ? indexType : OutputIndexType.IndexType.NONE;
+		mIndexBlockSize = indexBlockSize;
 	}
 
 	public void writeToFile() throws IOException {
@@ -48,14 +108,130 @@ public class CSVFileWriter {
 			return;
 		}
 
+		if (mIndexType != OutputIndexType.IndexType.NONE) {
+			writeIndexedToFile(output);
+
+			return;
+		}
+
 		CSVWriter writer = new CSVWriter(new FileWriter(output), ',');
 
 		writer.writeNext(Iterables.toArray(mTable.getColumnNameSet(), String.class));
 
-		for (Iterator<List<String>> rowItr = mTable.getRowItr(); rowItr.hasNext(); ) {
-			writer.writeNext(Iterables.toArray(rowItr.next(), String.class));
+		for (Iterator<Map.Entry<RowKey, List<String>>> rowEntryItr = getRowEntryItr(); rowEntryItr.hasNext(); ) {
+			writer.writeNext(Iterables.toArray(rowEntryItr.next().getValue(), String.class));
 		}
 
 		writer.close();
 	}
+
+	/**
+	 * Writes the table as UTF-8 and records the byte offset of each row in a sidecar index.
+	 *
+	 * Rows are encoded one at a time into a reusable buffer so that the byte offset of every row is
+	 * known without flushing the underlying file.
+	 */
+	private void writeIndexedToFile(File output) throws IOException {
+		CSVIndexWriter indexWriter =
+			new CSVIndexWriter(mIndexType, mIndexBlockSize, mTable.getIdColumnIndexes());
+		StringWriter rowBuffer = new StringWriter();
+		CSVWriter writer = new CSVWriter(rowBuffer, ',');
+		OutputStream out = new BufferedOutputStream(new FileOutputStream(output));
+		long offset = 0;
+
+		try {
+			writer.writeNext(Iterables.toArray(mTable.getColumnNameSet(), String.class));
+			offset += writeRow(rowBuffer, out);
+
+			indexWriter.setHeaderLength(offset);
+
+			for (Iterator<Map.Entry<RowKey, List<String>>> rowEntryItr = getRowEntryItr(); rowEntryItr.hasNext(); ) {
+				Map.Entry<RowKey, List<String>> rowEntry = rowEntryItr.next();
+
+				writer.writeNext(Iterables.toArray(rowEntry.getValue(), String.class));
+				indexWriter.addRow(rowEntry.getKey(), offset);
+
+				offset += writeRow(rowBuffer, out);
+			}
+		}
+		finally {
+			writer.close();
+			out.close();
+		}
+
+		indexWriter.writeToFile(mOutputFilename, offset);
+	}
+
+	/**
+	 * @return Iterator over the rows to write, recording the rows it returns.
+	 */
+	private Iterator<Map.Entry<RowKey, List<String>>> getRowEntryItr() {
+		final Iterator<Map.Entry<RowKey, List<String>>> rowEntryItr = mTable.getRowEntryItr(mFromKey, mToKey);
+
+		mNumRows = 0;
+		mFirstKey = null;
+		mLastKey = null;
+
+		return new Iterator<Map.Entry<RowKey, List<String>>>() {
+			@Override
+			public boolean hasNext() {
+				return rowEntryItr.hasNext();
+			}
+
+			@Override
+			public Map.Entry<RowKey, List<String>> next() {
+				Map.Entry<RowKey, List<String>> rowEntry = rowEntryItr.next();
+
+				if (mFirstKey == null) {
+					mFirstKey = rowEntry.getKey();
+				}
+
+				mLastKey = rowEntry.getKey();
+				mNumRows++;
+
+				return rowEntry;
+			}
+
+			@Override
+			public void remove() {
+				throw new IllegalStateException("Removing data is not permitted.");
+			}
+		};
+	}
+
+	/**
+	 * @return Number of rows written by the last call to {@link #writeToFile()}.
+	 */
+	public int getNumRows() {
+		return mNumRows;
+	}
+
+	/**
+	 * @return Key of the first row written, or null if no row was written.
+	 */
+	public RowKey getFirstKey() {
+		return mFirstKey;
+	}
+
+	/**
+	 * @return Key of the last row written, or null if no row was written.
+	 */
+	public RowKey getLastKey() {
+		return mLastKey;
+	}
+
+	/**
+	 * Moves the encoded row from the buffer to the output stream.
+	 *
+	 * @return Number of bytes written.
+	 */
+	private static int writeRow(StringWriter rowBuffer, OutputStream out) throws IOException {
+		StringBuffer sb = rowBuffer.getBuffer();
+		byte[] bytes = sb.toString().getBytes(Charsets.UTF_8);
+
+		sb.setLength(0);
+		out.write(bytes);
+
+		return bytes.length;
+	}
 }
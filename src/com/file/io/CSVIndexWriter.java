@@ -0,0 +1,152 @@
+package com.file.io;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import com.file.transform.RowKey;
+import com.file.type.OutputIndexType;
+
+/**
+ * Builds the sidecar index of a CSV file written in ascending ID order.
+ *
+ * Index layout (big endian):
+ *
+ * 		magic (int), version (int), index type (int), block size (int), ID column count (int),
+ * 		entry count (int), header length (long), data length (long)
+ * 		ID column count x [ID column index (int)]
+ * 		entry count x [key offset (long), row offset (long)]
+ * 		entry count x [key length (int), encoded key bytes (see {@link RowKey})]
+ *
+ * Key offsets are relative to the start of the key section. A _full_ index holds one entry per
+ * row, a _sparse_ index holds one entry for the first row of every block of rows.
+ */
+public class CSVIndexWriter {
+	// Constants
+
+	/**
+	 * Suffix appended to the CSV file name to get the name of the index file.
+	 */
+	public static final String INDEX_FILE_SUFFIX = ".idx";
+
+	static final int MAGIC = 0x43534958; // "CSIX"
+
+	static final int VERSION = 2;
+
+	static final int HEADER_LENGTH = 6 * 4 + 2 * 8;
+
+	static final int ENTRY_LENGTH = 2 * 8;
+
+	// Attributes
+
+	private final OutputIndexType.IndexType mIndexType;
+
+	private final int mBlockSize;
+
+	private final int[] mIdColumnIndexes;
+
+	private int mNumRows;
+
+	private long mHeaderLength;
+
+	private long[] mRowOffsets = new long[64];
+
+	// Associations
+
+	private final List<byte[]> mKeyList = new ArrayList<byte[]>();
+
+	// Constructors
+
+	public CSVIndexWriter(OutputIndexType.IndexType indexType, int blockSize, int[] idColumnIndexes) {
+		if (indexType == null || indexType == OutputIndexType.IndexType.NONE) {
+			throw new IllegalStateException("Index type must be provided.");
+		}
+		else if (blockSize <= 0) {
+			throw new IllegalStateException("Block size must be positive.");
+		}
+
+		mIndexType = indexType;
+		mBlockSize = (indexType == OutputIndexType.IndexType.FULL) ? 1 : blockSize;
+		mIdColumnIndexes = idColumnIndexes;
+	}
+
+	// Operations
+
+	/**
+	 * @param headerLength Number of bytes taken by the column name row.
+	 */
+	public void setHeaderLength(long headerLength) {
+		mHeaderLength = headerLength;
+	}
+
+	/**
+	 * Records a row. Rows must be added in ascending key order.
+	 *
+	 * @param id The key of the row.
+	 * @param offset Byte offset of the row in the CSV file.
+	 */
+	public void addRow(RowKey id, long offset) {
+		if (mNumRows++ % mBlockSize != 0) {
+			return;
+		}
+
+		int numEntries = mKeyList.size();
+
+		if (numEntries == mRowOffsets.length) {
+			mRowOffsets = Arrays.copyOf(mRowOffsets, numEntries * 2);
+		}
+
+		mRowOffsets[numEntries] = offset;
+		mKeyList.add(id.toByteArray());
+	}
+
+	/**
+	 * Writes the index to file.
+	 *
+	 * @param csvFilename Name of the indexed CSV file.
+	 * @param dataLength Total number of bytes in the indexed CSV file.
+	 */
+	public void writeToFile(String csvFilename, long dataLength) throws IOException {
+		int numEntries = mKeyList.size();
+
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+			new FileOutputStream(new File(csvFilename + INDEX_FILE_SUFFIX))));
+
+		try {
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeInt(mIndexType.ordinal());
+			out.writeInt(mBlockSize);
+			out.writeInt(mIdColumnIndexes.length);
+			out.writeInt(numEntries);
+			out.writeLong(mHeaderLength);
+			out.writeLong(dataLength);
+
+			for (int idColumnIndex : mIdColumnIndexes) {
+				out.writeInt(idColumnIndex);
+			}
+
+			long keyOffset = 0;
+
+			for (int i = 0; i < numEntries; i++) {
+				out.writeLong(keyOffset);
+				out.writeLong(mRowOffsets[i]);
+
+				keyOffset += 4 + mKeyList.get(i).length;
+			}
+
+			for (byte[] keyBytes : mKeyList) {
+				out.writeInt(keyBytes.length);
+				out.write(keyBytes);
+			}
+		}
+		finally {
+			out.close();
+		}
+	}
+}
@@ -0,0 +1,249 @@
+package com.file.io;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+import com.file.transform.RowKey;
+import com.file.type.OutputIndexType;
+import com.google.common.base.Charsets;
+
+import au.com.bytecode.opencsv.CSVReader;
+
+/**
+ * Looks up single rows of an indexed CSV file by ID.
+ *
+ * Both the CSV file and its sidecar index (see {@link CSVIndexWriter}) are memory mapped. A
+ * lookup binary searches the index and parses only the row (full index) or the block of rows
+ * (sparse index) that may contain the ID.
+ */
+public class CSVIndexedLookup implements Closeable {
+	// Attributes
+
+	private final String mFilename;
+
+	private final OutputIndexType.IndexType mIndexType;
+
+	private final int[] mIdColumnIndexes;
+
+	private final int mNumEntries;
+
+	private final long mHeaderLength;
+
+	private final long mDataLength;
+
+	/**
+	 * Start of the entry section in the index.
+	 */
+	private final int mEntrySectionOffset;
+
+	/**
+	 * Start of the key section in the index.
+	 */
+	private final int mKeySectionOffset;
+
+	// Associations
+
+	private final RandomAccessFile mDataFile;
+
+	private final MappedByteBuffer mIndex;
+
+	/**
+	 * Mapping of the whole CSV file, null if the file is too large to be mapped at once.
+	 */
+	private final MappedByteBuffer mData;
+
+	// Constructors
+
+	public CSVIndexedLookup(String csvFilename) throws IOException {
+		mFilename = csvFilename;
+
+		RandomAccessFile indexFile = new RandomAccessFile(
+			new File(csvFilename + CSVIndexWriter.INDEX_FILE_SUFFIX), "r");
+
+		try {
+			FileChannel indexChannel = indexFile.getChannel();
+
+			if (indexChannel.size() > Integer.MAX_VALUE) {
+				throw new IOException("Index of \"" + csvFilename + "\" is too large.");
+			}
+
+			mIndex = indexChannel.map(FileChannel.MapMode.READ_ONLY, 0, indexChannel.size());
+		}
+		finally {
+			indexFile.close();
+		}
+
+		if (mIndex.capacity() < CSVIndexWriter.HEADER_LENGTH || mIndex.getInt(0) != CSVIndexWriter.MAGIC) {
+			throw new IOException("\"" + csvFilename + "\" does not have a valid index.");
+		}
+		else if (mIndex.getInt(4) != CSVIndexWriter.VERSION) {
+			throw new IOException("Unsupported index version " + mIndex.getInt(4) + ".");
+		}
+
+		mIndexType = OutputIndexType.IndexType.values()[mIndex.getInt(8)];
+		mIdColumnIndexes = new int[mIndex.getInt(16)];
+		mNumEntries = mIndex.getInt(20);
+		mHeaderLength = mIndex.getLong(24);
+		mDataLength = mIndex.getLong(32);
+
+		for (int i = 0; i < mIdColumnIndexes.length; i++) {
+			mIdColumnIndexes[i] = mIndex.getInt(CSVIndexWriter.HEADER_LENGTH + i * 4);
+		}
+
+		mEntrySectionOffset = CSVIndexWriter.HEADER_LENGTH + mIdColumnIndexes.length * 4;
+		mKeySectionOffset = mEntrySectionOffset + mNumEntries * CSVIndexWriter.ENTRY_LENGTH;
+
+		mDataFile = new RandomAccessFile(new File(csvFilename), "r");
+
+		FileChannel dataChannel = mDataFile.getChannel();
+
+		if (dataChannel.size() != mDataLength) {
+			mDataFile.close();
+
+			throw new IOException("Index of \"" + csvFilename + "\" is stale.");
+		}
+
+		mData = (mDataLength <= Integer.MAX_VALUE)
+			? dataChannel.map(FileChannel.MapMode.READ_ONLY, 0, mDataLength)
+			: null;
+	}
+
+	// Operations
+
+	/**
+	 * @return The column names of the indexed file.
+	 */
+	public String[] getColumnNames() throws IOException {
+		return parseRows(0, mHeaderLength).readNext();
+	}
+
+	/**
+	 * Finds the row with provided ID.
+	 *
+	 * @param idValues The value of the ID column, or the values of the columns of a composite ID.
+	 *
+	 * @return The row or null if there is no row with provided ID.
+	 */
+	public String[] lookup(String... idValues) throws IOException {
+		if (idValues.length != mIdColumnIndexes.length) {
+			throw new IllegalStateException("Expected " + mIdColumnIndexes.length + " ID values.");
+		}
+
+		RowKey id = RowKey.of(idValues);
+
+		if (id == null || mNumEntries == 0) {
+			return null;
+		}
+
+		// Find the last entry with a key less than or equal to the ID
+		int low = 0;
+		int high = mNumEntries - 1;
+		int entry = -1;
+
+		while (low <= high) {
+			int mid = (low + high) >>> 1;
+			int cmp = getKey(mid).compareTo(id);
+
+			if (cmp == 0) {
+				entry = mid;
+
+				break;
+			}
+			else if (cmp < 0) {
+				entry = mid;
+				low = mid + 1;
+			}
+			else {
+				high = mid - 1;
+			}
+		}
+
+		if (entry == -1) {
+			return null;
+		}
+
+		long start = getRowOffset(entry);
+		long end = (entry + 1 < mNumEntries) ? getRowOffset(entry + 1) : mDataLength;
+		CSVReader reader = parseRows(start, end);
+		String[] row;
+
+		while ((row = reader.readNext()) != null) {
+			RowKey rowId = getRowKey(row);
+
+			if (rowId != null) {
+				int cmp = rowId.compareTo(id);
+
+				if (cmp == 0) {
+					return row;
+				}
+				else if (cmp > 0 || mIndexType == OutputIndexType.IndexType.FULL) {
+					break;
+				}
+			}
+		}
+
+		return null;
+	}
+
+	private RowKey getKey(int entry) {
+		int keyOffset = mKeySectionOffset +
+			(int) mIndex.getLong(mEntrySectionOffset + entry * CSVIndexWriter.ENTRY_LENGTH);
+		byte[] keyBytes = new byte[mIndex.getInt(keyOffset)];
+		ByteBuffer key = mIndex.duplicate();
+
+		key.position(keyOffset + 4);
+		key.get(keyBytes);
+
+		return RowKey.fromByteArray(keyBytes);
+	}
+
+	private RowKey getRowKey(String[] row) {
+		String[] idValues = new String[mIdColumnIndexes.length];
+
+		for (int i = 0; i < mIdColumnIndexes.length; i++) {
+			if (mIdColumnIndexes[i] >= row.length) {
+				return null;
+			}
+
+			idValues[i] = row[mIdColumnIndexes[i]];
+		}
+
+		return RowKey.of(idValues);
+	}
+
+	private long getRowOffset(int entry) {
+		return mIndex.getLong(mEntrySectionOffset + entry * CSVIndexWriter.ENTRY_LENGTH + 8);
+	}
+
+	private CSVReader parseRows(long start, long end) throws IOException {
+		long length = end - start;
+
+		if (length > Integer.MAX_VALUE) {
+			throw new IOException("Block of \"" + mFilename + "\" is too large.");
+		}
+
+		ByteBuffer rows;
+
+		if (mData != null) {
+			rows = mData.duplicate();
+			rows.position((int) start);
+			rows.limit((int) end);
+		}
+		else {
+			rows = mDataFile.getChannel().map(FileChannel.MapMode.READ_ONLY, start, length);
+		}
+
+		return new CSVReader(new StringReader(Charsets.UTF_8.decode(rows).toString()));
+	}
+
+	@Override
+	public void close() throws IOException {
+		mDataFile.close();
+	}
+}
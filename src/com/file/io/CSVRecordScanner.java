@@ -0,0 +1,426 @@
+package com.file.io;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.util.List;
+import java.util.Set;
+
+import com.file.transform.RowBuffer;
+import com.google.common.base.Charsets;
+import com.google.common.collect.ImmutableSet;
+
+/**
+ * Reads the records of a CSV input straight from its bytes, jumping from one structural character
+ * to the next with the masks of a {@link CSVStructuralScanner}.
+ *
+ * Records are parsed exactly as {@link au.com.bytecode.opencsv.CSVReader} parses them with its
+ * default settings, provided the charset is one of {@link #isSupported(Charset)}. Input that this
+ * reader cannot parse the same way (escape characters, quotes within unquoted fields, characters
+ * after a closing quote, unterminated quoted fields) is reported with an
+ * {@link UnsupportedSyntaxException}, and must then be read with CSVReader instead.
+ */
+public class CSVRecordScanner implements Closeable {
+	// Constants
+
+	private static final int INITIAL_BUFFER_SIZE = 64 * 1024;
+
+	/**
+	 * Charsets in which the structural characters are single bytes that never occur within the
+	 * encoding of another character.
+	 */
+	private static final Set<Charset> SUPPORTED_CHARSETS =
+		ImmutableSet.of(Charsets.UTF_8, Charsets.US_ASCII, Charsets.ISO_8859_1);
+
+	private static final byte SEPARATOR = ',';
+
+	private static final byte QUOTE = '"';
+
+	private static final byte ESCAPE = '\\';
+
+	private static final byte LINE_FEED = '\n';
+
+	private static final byte CARRIAGE_RETURN = '\r';
+
+	private static final int EOF = -1;
+
+	// Attributes
+
+	private final InputStream mIn;
+
+	private final Charset mCharset;
+
+	private byte[] mBuffer = new byte[INITIAL_BUFFER_SIZE];
+
+	/**
+	 * Number of bytes read into the buffer.
+	 */
+	private int mLimit;
+
+	private boolean mEof;
+
+	/**
+	 * Position of the first byte of the buffer still needed, kept when the buffer is refilled.
+	 */
+	private int mStart;
+
+	/**
+	 * Position of the next byte to parse.
+	 */
+	private int mPos;
+
+	/**
+	 * Mask of the structural characters of the mMaskLength bytes from mMaskBase.
+	 */
+	private long mMask;
+
+	private int mMaskBase;
+
+	private int mMaskLength;
+
+	/**
+	 * Quoted field bytes with escaped quotes and line terminators replaced.
+	 */
+	private byte[] mField = new byte[256];
+
+	private int mFieldLength;
+
+	/**
+	 * Whether CSVParser would consider itself within a field, which it carries over from one record
+	 * to the next and which decides whether a quote starting a record is taken as an escaped quote.
+	 */
+	private boolean mInField;
+
+	// Associations
+
+	private final CSVStructuralScanner mScanner;
+
+	// Constructors
+
+	/**
+	 * @param swar True to scan with the SWAR kernel, false to scan one byte at a time.
+	 */
+	public CSVRecordScanner(InputStream in, Charset charset, boolean swar) {
+		if (!isSupported(charset)) {
+			throw new IllegalStateException("Charset " + charset + " is not supported");
+		}
+
+		mIn = in;
+		mCharset = charset;
+		mScanner = new CSVStructuralScanner(swar);
+	}
+
+	// Operations
+
+	public static boolean isSupported(Charset charset) {
+		return SUPPORTED_CHARSETS.contains(charset);
+	}
+
+	/**
+	 * Reads the fields of the next record into the row.
+	 *
+	 * @return False, at the end of the input. Otherwise, true.
+	 */
+	public boolean readNext(RowBuffer record) throws IOException, UnsupportedSyntaxException {
+		mStart = mPos;
+		record.clear();
+
+		if (!isAvailable(0)) {
+			return false;
+		}
+
+		boolean endOfRecord;
+
+		do {
+			if (isAvailable(0) && mBuffer[mPos] == QUOTE) {
+				endOfRecord = readQuotedField(record);
+			}
+			else {
+				endOfRecord = readField(record, false);
+			}
+		}
+		while (!endOfRecord);
+
+		return true;
+	}
+
+	/**
+	 * Reads an unquoted field from mStart, scanning from mPos.
+	 *
+	 * @param escapedQuote True, if the field starts with a quote that CSVParser took as an escaped
+	 * quote.
+	 *
+	 * @return True, if the field ends the record. Otherwise, false.
+	 */
+	private boolean readField(List<String> record, boolean escapedQuote)
+			throws IOException, UnsupportedSyntaxException {
+		boolean found = nextStructural();
+
+		record.add(new String(mBuffer, mStart, mPos - mStart, mCharset));
+
+		if (mPos > mStart + (escapedQuote ? 1 : 0)) {
+			mInField = true;
+		}
+
+		if (!found) {
+			return true;
+		}
+
+		byte b = mBuffer[mPos];
+
+		if (b == SEPARATOR) {
+			mInField = false;
+			mPos++;
+			mStart = mPos;
+
+			return false;
+		}
+		else if (b == LINE_FEED || b == CARRIAGE_RETURN) {
+			skipLineTerminator();
+
+			return true;
+		}
+
+		throw new UnsupportedSyntaxException("Unexpected " + (char) b + " within an unquoted field");
+	}
+
+	/**
+	 * Reads a quoted field starting with the quote at mPos.
+	 *
+	 * @return True, if the field ends the record. Otherwise, false.
+	 */
+	private boolean readQuotedField(List<String> record) throws IOException, UnsupportedSyntaxException {
+		if (mInField && peek(1) == QUOTE) {
+			// CSVParser takes two quotes starting a record after an unquoted field for an escaped quote
+			mInField = false;
+			mStart = mPos + 1;
+			mPos += 2;
+
+			return readField(record, true);
+		}
+
+		mInField = !mInField;
+		mFieldLength = 0;
+		mPos++;
+		mStart = mPos;
+
+		while (true) {
+			if (!nextStructural()) {
+				throw new UnsupportedSyntaxException("Unterminated quoted field");
+			}
+
+			byte b = mBuffer[mPos];
+
+			if (b == SEPARATOR) {
+				mPos++;
+
+				continue;
+			}
+			else if (b == ESCAPE) {
+				throw new UnsupportedSyntaxException("Escape character within a quoted field");
+			}
+
+			if (mPos > mStart) {
+				mInField = true;
+			}
+
+			if (b == QUOTE) {
+				int next = peek(1);
+
+				if (next == QUOTE) {
+					// escaped quote, keep one of the two
+					appendToField(mStart, mPos + 1);
+
+					mInField = !mInField;
+					mPos += 2;
+					mStart = mPos;
+
+					continue;
+				}
+
+				if (mFieldLength == 0) {
+					record.add(new String(mBuffer, mStart, mPos - mStart, mCharset));
+				}
+				else {
+					appendToField(mStart, mPos);
+					record.add(new String(mField, 0, mFieldLength, mCharset));
+				}
+
+				mInField = !mInField;
+				mPos++;
+				mStart = mPos;
+
+				if (next == EOF) {
+					return true;
+				}
+				else if (next == SEPARATOR) {
+					mInField = false;
+					mPos++;
+					mStart = mPos;
+
+					return false;
+				}
+				else if (next == LINE_FEED || next == CARRIAGE_RETURN) {
+					skipLineTerminator();
+
+					return true;
+				}
+
+				throw new UnsupportedSyntaxException("Unexpected " + (char) next + " after a closing quote");
+			}
+
+			// line terminator within the field, which CSVReader always turns into a line feed
+			appendToField(mStart, mPos);
+			appendToField(LINE_FEED);
+			skipLineTerminator();
+		}
+	}
+
+	/**
+	 * Moves past the line terminator at mPos: a line feed, a carriage return, or both.
+	 */
+	private void skipLineTerminator() throws IOException {
+		boolean carriageReturn = (mBuffer[mPos] == CARRIAGE_RETURN);
+
+		mPos++;
+
+		if (carriageReturn && peek(0) == LINE_FEED) {
+			mPos++;
+		}
+
+		mStart = mPos;
+	}
+
+	/**
+	 * Moves mPos to the next structural character, if any, or else to the end of the input.
+	 *
+	 * @return True, if a structural character was found. Otherwise, false.
+	 */
+	private boolean nextStructural() throws IOException {
+		while (true) {
+			if (mPos >= mMaskBase && mPos < mMaskBase + mMaskLength) {
+				long mask = mMask & (-1L << (mPos - mMaskBase));
+
+				if (mask != 0L) {
+					mPos = mMaskBase + Long.numberOfTrailingZeros(mask);
+
+					return true;
+				}
+
+				mPos = mMaskBase + mMaskLength;
+			}
+
+			if (!isAvailable(0)) {
+				return false;
+			}
+
+			mMaskBase = mPos;
+			mMaskLength = Math.min(CSVStructuralScanner.BLOCK_SIZE, mLimit - mPos);
+			mMask = mScanner.scan(mBuffer, mMaskBase, mMaskLength);
+		}
+	}
+
+	/**
+	 * @return The byte at mPos + offset, or {@link #EOF} past the end of the input.
+	 */
+	private int peek(int offset) throws IOException {
+		return isAvailable(offset) ? mBuffer[mPos + offset] : EOF;
+	}
+
+	/**
+	 * @return True, if the byte at mPos + offset is in the buffer, reading more input if needed.
+	 * Otherwise, false.
+	 */
+	private boolean isAvailable(int offset) throws IOException {
+		while (mPos + offset >= mLimit) {
+			if (!fill()) {
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+	/**
+	 * Drops the bytes before mStart and reads more input into the buffer, growing it if full.
+	 *
+	 * @return False, at the end of the input. Otherwise, true.
+	 */
+	private boolean fill() throws IOException {
+		if (mEof) {
+			return false;
+		}
+
+		if (mStart > 0) {
+			System.arraycopy(mBuffer, mStart, mBuffer, 0, mLimit - mStart);
+
+			mLimit -= mStart;
+			mPos -= mStart;
+			mStart = 0;
+		}
+		else if (mLimit == mBuffer.length) {
+			byte[] buffer = new byte[mBuffer.length * 2];
+
+			System.arraycopy(mBuffer, 0, buffer, 0, mLimit);
+
+			mBuffer = buffer;
+		}
+
+		mMaskLength = 0;
+
+		int numRead = mIn.read(mBuffer, mLimit, mBuffer.length - mLimit);
+
+		if (numRead < 0) {
+			mEof = true;
+
+			return false;
+		}
+
+		mLimit += numRead;
+
+		return true;
+	}
+
+	private void appendToField(int from, int to) {
+		int length = to - from;
+
+		ensureFieldCapacity(length);
+
+		System.arraycopy(mBuffer, from, mField, mFieldLength, length);
+
+		mFieldLength += length;
+	}
+
+	private void appendToField(byte b) {
+		ensureFieldCapacity(1);
+
+		mField[mFieldLength++] = b;
+	}
+
+	private void ensureFieldCapacity(int length) {
+		if (mFieldLength + length > mField.length) {
+			byte[] field = new byte[Math.max(mField.length * 2, mFieldLength + length)];
+
+			System.arraycopy(mField, 0, field, 0, mFieldLength);
+
+			mField = field;
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		mIn.close();
+	}
+
+	/**
+	 * Input that CSVReader would parse differently than this reader.
+	 */
+	public static class UnsupportedSyntaxException extends Exception {
+		private static final long serialVersionUID = 1L;
+
+		public UnsupportedSyntaxException(String message) {
+			super(message);
+		}
+	}
+}
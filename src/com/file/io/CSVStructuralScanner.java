@@ -0,0 +1,137 @@
+package com.file.io;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Classifies the bytes of an ASCII compatible CSV input into a bitmask of structural characters:
+ * separators, quotes, escapes and line terminators.
+ *
+ * Bit i of a mask is set if the byte at offset + i is structural. A full block of 64 bytes is
+ * classified eight bytes at a time in 64-bit words (SWAR); the scalar kernel classifies one byte at
+ * a time and gives the same masks.
+ */
+public class CSVStructuralScanner {
+	// Constants
+
+	/**
+	 * Number of bytes classified per mask.
+	 */
+	public static final int BLOCK_SIZE = 64;
+
+	private static final long ONES = 0x0101010101010101L;
+
+	private static final long LOW_BITS = 0x7F7F7F7F7F7F7F7FL;
+
+	/**
+	 * Gathers the high bit of every byte of a word into the top byte.
+	 */
+	private static final long GATHER = 0x0102040810204080L;
+
+	private static final byte SEPARATOR = ',';
+
+	private static final byte QUOTE = '"';
+
+	private static final byte ESCAPE = '\\';
+
+	private static final byte LINE_FEED = '\n';
+
+	private static final byte CARRIAGE_RETURN = '\r';
+
+	private static final long SEPARATORS = SEPARATOR * ONES;
+
+	private static final long QUOTES = QUOTE * ONES;
+
+	private static final long ESCAPES = ESCAPE * ONES;
+
+	private static final long LINE_FEEDS = LINE_FEED * ONES;
+
+	private static final long CARRIAGE_RETURNS = CARRIAGE_RETURN * ONES;
+
+	// Attributes
+
+	private final boolean mSwar;
+
+	// Associations
+
+	private byte[] mBuffer;
+
+	private ByteBuffer mWords;
+
+	// Constructors
+
+	/**
+	 * @param swar True to classify full blocks eight bytes at a time, false to classify one byte at
+	 * a time.
+	 */
+	public CSVStructuralScanner(boolean swar) {
+		mSwar = swar;
+	}
+
+	// Operations
+
+	/**
+	 * @return The mask of the length bytes from offset, length being at most {@link #BLOCK_SIZE}.
+	 */
+	public long scan(byte[] buffer, int offset, int length) {
+		if (mSwar && length == BLOCK_SIZE) {
+			return scanBlock(buffer, offset);
+		}
+
+		return scanScalar(buffer, offset, length);
+	}
+
+	private long scanBlock(byte[] buffer, int offset) {
+		if (mBuffer != buffer) {
+			mBuffer = buffer;
+			mWords = ByteBuffer.wrap(buffer).order(ByteOrder.LITTLE_ENDIAN);
+		}
+
+		long mask = 0L;
+
+		for (int i = 0; i < BLOCK_SIZE; i += 8) {
+			mask |= gather(matches(mWords.getLong(offset + i))) << i;
+		}
+
+		return mask;
+	}
+
+	public static long scanScalar(byte[] buffer, int offset, int length) {
+		long mask = 0L;
+
+		for (int i = 0; i < length; i++) {
+			if (isStructural(buffer[offset + i])) {
+				mask |= 1L << i;
+			}
+		}
+
+		return mask;
+	}
+
+	public static boolean isStructural(byte b) {
+		return b == SEPARATOR || b == QUOTE || b == ESCAPE || b == LINE_FEED || b == CARRIAGE_RETURN;
+	}
+
+	/**
+	 * @return The word with the high bit set of every structural byte, all other bits cleared.
+	 */
+	private static long matches(long word) {
+		return zeroBytes(word ^ SEPARATORS) | zeroBytes(word ^ QUOTES) | zeroBytes(word ^ ESCAPES) |
+			zeroBytes(word ^ LINE_FEEDS) | zeroBytes(word ^ CARRIAGE_RETURNS);
+	}
+
+	/**
+	 * @return The word with the high bit set of every zero byte, all other bits cleared. Unlike
+	 * the usual (x - 0x01..) &amp; ~x test, no borrow crosses bytes, so there are no false hits.
+	 */
+	private static long zeroBytes(long word) {
+		return ~(((word & LOW_BITS) + LOW_BITS) | word | LOW_BITS);
+	}
+
+	/**
+	 * @return The high bits of the eight bytes of the word as the eight low bits.
+	 */
+	private static long gather(long highBits) {
+		return ((highBits >>> 7) * GATHER) >>> 56;
+	}
+}
@@ -0,0 +1,220 @@
+package com.file.io;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import com.file.transform.InternalTable;
+import com.file.transform.RowBuffer;
+
+/**
+ * Reads a file written by {@link ColumnarFileWriter} and creates a corresponding internal table.
+ */
+public class ColumnarFileReader extends AbstractFileReader {
+	// Constants
+
+	/**
+	 * The Logger instance.
+	 */
+	private static final Log LOGGER = LogFactory.getLog(ColumnarFileReader.class);
+
+	// Constructors
+
+	public ColumnarFileReader(String idColumnName) {
+		super(idColumnName);
+	}
+
+	// Operations
+
+	public InternalTable process(String filename) throws IOException {
+		File input = getFile(filename);
+
+		if (input != null) {
+			RandomAccessFile file = new RandomAccessFile(input, "r");
+			Inflater inflater = new Inflater();
+			RejectFileWriter rejectWriter = null;
+
+			try {
+				ByteBuffer footer = readFooter(file);
+				int numCols = ColumnarFormat.readVarInt(footer);
+				List<String> colNameList = new ArrayList<String>(numCols);
+
+				for (int i = 0; i < numCols; i++) {
+					colNameList.add(ColumnarFormat.readString(footer));
+				}
+
+				ColumnarFormat.readVarInt(footer); // ID column index of the writer, the header is matched instead
+				ColumnarFormat.readVarLong(footer); // total row count
+
+				int numGroups = ColumnarFormat.readVarInt(footer);
+				InternalTable internalTable = new InternalTable(colNameList, getIdColumnName());
+				String[][] columns = new String[numCols][];
+				RowBuffer rowBuffer = new RowBuffer();
+
+				rejectWriter = prepareTable(filename, internalTable);
+
+				for (int group = 0; group < numGroups; group++) {
+					int numRows = ColumnarFormat.readVarInt(footer);
+
+					for (int i = 0; i < numCols; i++) {
+						long offset = ColumnarFormat.readVarLong(footer);
+						int length = ColumnarFormat.readVarInt(footer);
+						int rawLength = ColumnarFormat.readVarInt(footer);
+						byte encoding = footer.get();
+						byte compression = footer.get();
+						ByteBuffer chunk = readChunk(file, offset, length, rawLength, compression, inflater);
+
+						columns[i] = decodeChunk(chunk, encoding, numRows);
+					}
+
+					for (int row = 0; row < numRows; row++) {
+						rowBuffer.clear();
+
+						for (int i = 0; i < numCols; i++) {
+							rowBuffer.add(columns[i][row]);
+						}
+
+						internalTable.addRow(rowBuffer);
+					}
+				}
+
+				closeRejectWriter(internalTable, rejectWriter);
+
+				return internalTable;
+			}
+			catch (IllegalStateException e) {
+				if (LOGGER.isWarnEnabled()) {
+					LOGGER.warn("Failed to process file \"" + filename + "\". Skipping file.", e);
+				}
+
+				throw e;
+			}
+			finally {
+				discardRejectWriter(rejectWriter);
+				inflater.end();
+				file.close();
+			}
+		}
+
+		return null;
+	}
+
+	private static ByteBuffer readFooter(RandomAccessFile file) throws IOException {
+		long fileLength = file.length();
+
+		if (fileLength < 16) {
+			throw new IOException("File is too short to be a columnar file.");
+		}
+
+		file.seek(0);
+
+		if (file.readInt() != ColumnarFormat.MAGIC) {
+			throw new IOException("File is not a columnar file.");
+		}
+		else if (file.readInt() != ColumnarFormat.VERSION) {
+			throw new IOException("Unsupported columnar file version.");
+		}
+
+		file.seek(fileLength - 8);
+
+		int footerLength = file.readInt();
+
+		if (file.readInt() != ColumnarFormat.MAGIC || footerLength < 0 || footerLength > fileLength - 16) {
+			throw new IOException("Columnar file is truncated or corrupt.");
+		}
+
+		byte[] footer = new byte[footerLength];
+
+		file.seek(fileLength - 8 - footerLength);
+		file.readFully(footer);
+
+		return ByteBuffer.wrap(footer);
+	}
+
+	private static ByteBuffer readChunk(RandomAccessFile file, long offset, int length, int rawLength,
+			byte compression, Inflater inflater) throws IOException {
+		byte[] stored = new byte[length];
+
+		file.seek(offset);
+		file.readFully(stored);
+
+		if (compression == ColumnarFormat.COMPRESSION_NONE) {
+			return ByteBuffer.wrap(stored);
+		}
+		else if (compression != ColumnarFormat.COMPRESSION_DEFLATE) {
+			throw new IOException("Unsupported chunk compression " + compression + ".");
+		}
+
+		byte[] raw = new byte[rawLength];
+
+		inflater.reset();
+		inflater.setInput(stored);
+
+		try {
+			int inflated = 0;
+
+			while (inflated < rawLength && !inflater.finished()) {
+				int n = inflater.inflate(raw, inflated, rawLength - inflated);
+
+				if (n == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+					break;
+				}
+
+				inflated += n;
+			}
+
+			if (inflated != rawLength) {
+				throw new IOException("Compressed chunk is truncated.");
+			}
+		}
+		catch (DataFormatException e) {
+			throw new IOException("Compressed chunk is corrupt.", e);
+		}
+
+		return ByteBuffer.wrap(raw);
+	}
+
+	private static String[] decodeChunk(ByteBuffer chunk, byte encoding, int numRows) throws IOException {
+		String[] column = new String[numRows];
+
+		if (encoding == ColumnarFormat.ENCODING_PLAIN) {
+			for (int i = 0; i < numRows; i++) {
+				column[i] = ColumnarFormat.readString(chunk);
+			}
+		}
+		else if (encoding == ColumnarFormat.ENCODING_DICTIONARY_RLE) {
+			String[] dictionary = new String[ColumnarFormat.readVarInt(chunk)];
+
+			for (int i = 0; i < dictionary.length; i++) {
+				dictionary[i] = ColumnarFormat.readString(chunk);
+			}
+
+			for (int i = 0; i < numRows; ) {
+				int dictIdx = ColumnarFormat.readVarInt(chunk);
+				int runLength = ColumnarFormat.readVarInt(chunk);
+
+				if (dictIdx >= dictionary.length || runLength > numRows - i) {
+					throw new IOException("Dictionary encoded chunk is corrupt.");
+				}
+
+				Arrays.fill(column, i, i + runLength, dictionary[dictIdx]);
+
+				i += runLength;
+			}
+		}
+		else {
+			throw new IOException("Unsupported chunk encoding " + encoding + ".");
+		}
+
+		return column;
+	}
+}
@@ -0,0 +1,269 @@
+package com.file.io;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.Deflater;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import com.file.transform.InternalTable;
+
+/**
+ * Writes an internal table in the binary columnar format (see {@link ColumnarFormat}).
+ *
+ * Rows are split into row groups and every column of a row group is stored as its own chunk.
+ * Low-cardinality chunks are dictionary and run-length encoded, and chunks may optionally be
+ * deflate compressed.
+ */
+public class ColumnarFileWriter {
+	// Constants
+
+	/**
+	 * The Logger instance.
+	 */
+	private static final Log LOGGER = LogFactory.getLog(ColumnarFileWriter.class);
+
+	/**
+	 * Default number of rows per row group.
+	 */
+	public static final int DEFAULT_ROWS_PER_GROUP = 64 * 1024;
+
+	/**
+	 * A chunk is dictionary encoded only if it has at most one distinct value per this many rows.
+	 */
+	private static final int DICTIONARY_MIN_ROWS_PER_VALUE = 4;
+
+	// Attributes
+
+	private final String mOutputFilename;
+
+	private final boolean mCompress;
+
+	private final int mRowsPerGroup;
+
+	/**
+	 * Number of bytes written to the output file so far.
+	 */
+	private long mBytesWritten;
+
+	// Associations
+
+	private final InternalTable mTable;
+
+	// Constructors
+
+	public ColumnarFileWriter(String filename, InternalTable table, boolean compress) {
+		this(filename, table, compress, DEFAULT_ROWS_PER_GROUP);
+	}
+
+	public ColumnarFileWriter(String filename, InternalTable table, boolean compress, int rowsPerGroup) {
+		if (rowsPerGroup <= 0) {
+			throw new IllegalStateException("Number of rows per group must be positive.");
+		}
+
+		mOutputFilename = filename;
+		mTable = table;
+		mCompress = compress;
+		mRowsPerGroup = rowsPerGroup;
+	}
+
+	// Operations
+
+	public void writeToFile() throws IOException {
+		File output = new File(mOutputFilename);
+
+		if (output.exists() && !output.canWrite()) {
+			if (LOGGER.isWarnEnabled()) {
+				LOGGER.warn("Unable to write to file \"" + mOutputFilename + "\". Skipping writing to file.");
+			}
+
+			return;
+		}
+
+		int numCols = mTable.getColumnNameSet().size();
+		ByteArrayOutputStream footer = new ByteArrayOutputStream();
+		ByteArrayOutputStream groupDirectory = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(output)));
+		Deflater deflater = mCompress ? new Deflater(Deflater.BEST_SPEED) : null;
+
+		try {
+			out.writeInt(ColumnarFormat.MAGIC);
+			out.writeInt(ColumnarFormat.VERSION);
+
+			mBytesWritten = 8;
+
+			// tables smaller than a row group, e.g. checkpoint snapshots, only take what they need
+			String[][] columns = new String[numCols][Math.min(mRowsPerGroup, mTable.getRowCount())];
+			long numRows = 0;
+			int numGroups = 0;
+			int groupRows = 0;
+
+			for (Iterator<List<String>> rowItr = mTable.getRowItr(); rowItr.hasNext(); ) {
+				List<String> row = rowItr.next();
+
+				for (int i = 0; i < numCols; i++) {
+					columns[i][groupRows] = row.get(i);
+				}
+
+				numRows++;
+
+				if (++groupRows == mRowsPerGroup) {
+					writeRowGroup(out, groupDirectory, columns, groupRows, deflater);
+
+					numGroups++;
+					groupRows = 0;
+				}
+			}
+
+			if (groupRows > 0) {
+				writeRowGroup(out, groupDirectory, columns, groupRows, deflater);
+
+				numGroups++;
+			}
+
+			ColumnarFormat.writeVarLong(footer, numCols);
+
+			for (String colName : mTable.getColumnNameSet()) {
+				ColumnarFormat.writeString(footer, colName);
+			}
+
+			ColumnarFormat.writeVarLong(footer, mTable.getIdColumnIndex());
+			ColumnarFormat.writeVarLong(footer, numRows);
+			ColumnarFormat.writeVarLong(footer, numGroups);
+			groupDirectory.writeTo(footer);
+
+			footer.writeTo(out);
+			out.writeInt(footer.size());
+			out.writeInt(ColumnarFormat.MAGIC);
+		}
+		finally {
+			if (deflater != null) {
+				deflater.end();
+			}
+
+			out.close();
+		}
+	}
+
+	private void writeRowGroup(DataOutputStream out, ByteArrayOutputStream groupDirectory,
+			String[][] columns, int numRows, Deflater deflater) throws IOException {
+		ColumnarFormat.writeVarLong(groupDirectory, numRows);
+
+		ByteArrayOutputStream chunk = new ByteArrayOutputStream();
+
+		for (String[] column : columns) {
+			chunk.reset();
+
+			byte encoding = encodeChunk(chunk, column, numRows);
+			byte compression = ColumnarFormat.COMPRESSION_NONE;
+			int rawLength = chunk.size();
+			long offset = mBytesWritten;
+
+			if (deflater != null) {
+				byte[] compressed = deflate(deflater, chunk.toByteArray());
+
+				if (compressed.length < rawLength) {
+					compression = ColumnarFormat.COMPRESSION_DEFLATE;
+
+					out.write(compressed);
+
+					mBytesWritten += compressed.length;
+				}
+			}
+
+			if (compression == ColumnarFormat.COMPRESSION_NONE) {
+				chunk.writeTo(out);
+
+				mBytesWritten += rawLength;
+			}
+
+			ColumnarFormat.writeVarLong(groupDirectory, offset);
+			ColumnarFormat.writeVarLong(groupDirectory, mBytesWritten - offset);
+			ColumnarFormat.writeVarLong(groupDirectory, rawLength);
+			groupDirectory.write(encoding);
+			groupDirectory.write(compression);
+		}
+	}
+
+	/**
+	 * Encodes the values of a column chunk, choosing dictionary and run-length encoding for
+	 * low-cardinality chunks.
+	 *
+	 * @return The encoding used.
+	 */
+	private static byte encodeChunk(ByteArrayOutputStream chunk, String[] column, int numRows) {
+		int maxDictionarySize = Math.max(1, numRows / DICTIONARY_MIN_ROWS_PER_VALUE);
+		HashMap<String, Integer> dictIdxByValueMap = new HashMap<String, Integer>();
+		int[] dictIdxs = new int[numRows];
+
+		for (int i = 0; i < numRows; i++) {
+			Integer dictIdx = dictIdxByValueMap.get(column[i]);
+
+			if (dictIdx == null) {
+				if (dictIdxByValueMap.size() == maxDictionarySize) {
+					for (int j = 0; j < numRows; j++) {
+						ColumnarFormat.writeString(chunk, column[j]);
+					}
+
+					return ColumnarFormat.ENCODING_PLAIN;
+				}
+
+				dictIdx = dictIdxByValueMap.size();
+				dictIdxByValueMap.put(column[i], dictIdx);
+			}
+
+			dictIdxs[i] = dictIdx;
+		}
+
+		String[] dictionary = new String[dictIdxByValueMap.size()];
+
+		for (Map.Entry<String, Integer> dictEntry : dictIdxByValueMap.entrySet()) {
+			dictionary[dictEntry.getValue()] = dictEntry.getKey();
+		}
+
+		ColumnarFormat.writeVarLong(chunk, dictionary.length);
+
+		for (String value : dictionary) {
+			ColumnarFormat.writeString(chunk, value);
+		}
+
+		for (int i = 0; i < numRows; ) {
+			int runStart = i;
+
+			while (i < numRows && dictIdxs[i] == dictIdxs[runStart]) {
+				i++;
+			}
+
+			ColumnarFormat.writeVarLong(chunk, dictIdxs[runStart]);
+			ColumnarFormat.writeVarLong(chunk, i - runStart);
+		}
+
+		return ColumnarFormat.ENCODING_DICTIONARY_RLE;
+	}
+
+	private static byte[] deflate(Deflater deflater, byte[] input) {
+		ByteArrayOutputStream compressed = new ByteArrayOutputStream(input.length / 2 + 16);
+		byte[] buffer = new byte[8192];
+
+		deflater.reset();
+		deflater.setInput(input);
+		deflater.finish();
+
+		while (!deflater.finished()) {
+			int length = deflater.deflate(buffer);
+
+			compressed.write(buffer, 0, length);
+		}
+
+		return compressed.toByteArray();
+	}
+}
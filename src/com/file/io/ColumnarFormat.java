@@ -0,0 +1,119 @@
+package com.file.io;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import com.google.common.base.Charsets;
+
+/**
+ * Constants and primitive encodings of the binary columnar file format.
+ *
+ * File layout:
+ *
+ * 		magic (int), version (int)
+ * 		column chunks of every row group, one chunk per column
+ * 		footer
+ * 		footer length (int), magic (int)
+ *
+ * Footer layout:
+ *
+ * 		column count (varint), column names (strings), ID column index (varint),
+ * 		row count (varint), row group count (varint)
+ * 		for every row group: row count (varint) and for every column chunk:
+ * 			offset (varint), stored length (varint), raw length (varint), encoding (byte),
+ * 			compression (byte)
+ *
+ * Strings are stored as varint (length + 1) followed by UTF-8 bytes, length 0 meaning null.
+ */
+final class ColumnarFormat {
+	// Constants
+
+	static final int MAGIC = 0x444d4346; // "DMCF"
+
+	static final int VERSION = 1;
+
+	/**
+	 * Column chunk values are stored one after another.
+	 */
+	static final byte ENCODING_PLAIN = 0;
+
+	/**
+	 * Column chunk holds a dictionary of distinct values followed by runs of
+	 * (dictionary index, run length).
+	 */
+	static final byte ENCODING_DICTIONARY_RLE = 1;
+
+	static final byte COMPRESSION_NONE = 0;
+
+	static final byte COMPRESSION_DEFLATE = 1;
+
+	// Constructors
+
+	private ColumnarFormat() {
+	}
+
+	// Operations
+
+	static void writeVarLong(ByteArrayOutputStream out, long value) {
+		while ((value & ~0x7FL) != 0) {
+			out.write((int) ((value & 0x7F) | 0x80));
+			value >>>= 7;
+		}
+
+		out.write((int) value);
+	}
+
+	static long readVarLong(ByteBuffer in) throws IOException {
+		long value = 0;
+
+		for (int shift = 0; shift < 64; shift += 7) {
+			byte b = in.get();
+
+			value |= (long) (b & 0x7F) << shift;
+
+			if ((b & 0x80) == 0) {
+				return value;
+			}
+		}
+
+		throw new IOException("Malformed variable length integer.");
+	}
+
+	static int readVarInt(ByteBuffer in) throws IOException {
+		long value = readVarLong(in);
+
+		if (value < 0 || value > Integer.MAX_VALUE) {
+			throw new IOException("Variable length integer " + value + " is out of range.");
+		}
+
+		return (int) value;
+	}
+
+	static void writeString(ByteArrayOutputStream out, String value) {
+		if (value == null) {
+			writeVarLong(out, 0);
+
+			return;
+		}
+
+		byte[] bytes = value.getBytes(Charsets.UTF_8);
+
+		writeVarLong(out, bytes.length + 1L);
+		out.write(bytes, 0, bytes.length);
+	}
+
+	static String readString(ByteBuffer in) throws IOException {
+		int length = readVarInt(in);
+
+		if (length == 0) {
+			return null;
+		}
+
+		byte[] bytes = new byte[length - 1];
+
+		in.get(bytes);
+
+		return new String(bytes, Charsets.UTF_8);
+	}
+}
@@ -2,6 +2,7 @@ package com.file.io;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
@@ -14,6 +15,7 @@ import org.jsoup.nodes.Element;
 import org.jsoup.select.Elements;
 
 import com.file.transform.InternalTable;
+import com.file.transform.RowBuffer;
 import com.google.common.base.Charsets;
 
 /**
@@ -43,8 +45,10 @@ public class HTMLFileReader extends AbstractFileReader {
 		File input = getFile(filename);
 
 		if (input != null) {
+			RejectFileWriter rejectWriter = null;
+
 			try {
-				Document doc = Jsoup.parse(input, Charsets.UTF_8.toString(), "");
+				Document doc = parseDocument(input);
 				Element body = doc.body();
 				Elements table = body.select("table"); // assuming there is a table node
 				InternalTable internalTable = null;
@@ -61,20 +65,28 @@ public class HTMLFileReader extends AbstractFileReader {
 					}
 
 					internalTable = new InternalTable(colNameList, getIdColumnName()); 
+					rejectWriter = prepareTable(filename, internalTable);
 				}
 
+				RowBuffer rowBuffer = new RowBuffer();
+
 				for (; rowItr.hasNext();) {
 					Element row = rowItr.next();
 					Elements tds = row.select("td"); // assuming data is in td node
-					List<String> dataList = new ArrayList<String>(tds.size());
+
+					rowBuffer.clear();
 
 					for (Element td : tds) {
-						dataList.add(td.text());
+						rowBuffer.add(td.text());
 					}
 
-					internalTable.addData(dataList); 
+					internalTable.addRow(rowBuffer); 
+					inferColumnTypes(internalTable, false);
 				}
 
+				inferColumnTypes(internalTable, true);
+				closeRejectWriter(internalTable, rejectWriter);
+
 				return internalTable;
 			}
 			catch (IllegalStateException e) {
@@ -84,8 +96,22 @@ public class HTMLFileReader extends AbstractFileReader {
 
 				throw e;
 			}
+			finally {
+				discardRejectWriter(rejectWriter);
+			}
 		}
 
 		return null;
 	}
+
+	private Document parseDocument(File input) throws IOException {
+		InputStream in = openInputStream(input);
+
+		try {
+			return Jsoup.parse(in, Charsets.UTF_8.toString(), "");
+		}
+		finally {
+			in.close();
+		}
+	}
 }
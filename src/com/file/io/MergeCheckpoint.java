@@ -0,0 +1,337 @@
+package com.file.io;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import com.file.transform.InternalTable;
+import com.google.common.base.Charsets;
+
+/**
+ * A checkpoint of a merge: the inputs merged so far and a snapshot of the partially merged table.
+ *
+ * A checkpoint directory holds the manifest "checkpoint" and the snapshot it names, in the columnar
+ * format (see {@link ColumnarFileWriter}). The snapshot is renamed into place before the manifest,
+ * so the manifest always names a complete snapshot. The manifest has one "key=value" pair per line:
+ *
+ * 		idColumn=ID
+ * 		snapshot=snapshot-00003.dmc
+ * 		input=1048576,1413824400000,first.csv (length, last modified time and name of a merged input)
+ *
+ * The length and last modified time of an input are those it had when it was merged, so that a
+ * checkpoint is not resumed if an input changed after it was merged, even before the checkpoint was
+ * written.
+ */
+public class MergeCheckpoint {
+	// Constants
+
+	/**
+	 * The Logger instance.
+	 */
+	private static final Log LOGGER = LogFactory.getLog(MergeCheckpoint.class);
+
+	private static final String MANIFEST_FILENAME = "checkpoint";
+
+	private static final String SNAPSHOT_FILENAME_PREFIX = "snapshot-";
+
+	private static final String SNAPSHOT_FILENAME_SUFFIX = ".dmc";
+
+	// Attributes
+
+	/**
+	 * Sequence number of the checkpoint, increasing from one checkpoint of a merge to the next.
+	 */
+	private final int mSequence;
+
+	/**
+	 * The merged inputs, in merge order.
+	 */
+	private final List<Input> mInputList;
+
+	// Associations
+
+	private final InternalTable mTable;
+
+	// Constructors
+
+	public MergeCheckpoint(int sequence, List<Input> inputList, InternalTable table) {
+		mSequence = sequence;
+		mInputList = Collections.unmodifiableList(new ArrayList<Input>(inputList));
+		mTable = table;
+	}
+
+	// Operations
+
+	/**
+	 * Writes the checkpoint to the directory, replacing the previous checkpoint in it.
+	 */
+	public void write(File directory) throws IOException {
+		if (!directory.isDirectory() && !directory.mkdirs()) {
+			throw new IOException("Unable to create checkpoint directory \"" + directory + "\"");
+		}
+
+		String snapshotFilename = String.format("%s%05d%s", SNAPSHOT_FILENAME_PREFIX, mSequence,
+			SNAPSHOT_FILENAME_SUFFIX);
+		File snapshot = new File(directory, snapshotFilename);
+		File tempSnapshot = OutputFiles.createTempFile(snapshot);
+
+		try {
+			new ColumnarFileWriter(tempSnapshot.getPath(), mTable, true).writeToFile();
+
+			OutputFiles.commit(tempSnapshot, snapshot);
+		}
+		finally {
+			OutputFiles.discard(tempSnapshot);
+		}
+
+		File manifest = new File(directory, MANIFEST_FILENAME);
+		File tempManifest = OutputFiles.createTempFile(manifest);
+
+		try {
+			Writer writer = new OutputStreamWriter(new FileOutputStream(tempManifest), Charsets.UTF_8);
+
+			try {
+				writer.write("idColumn=" + mTable.getIDColumnName() + "\n");
+				writer.write("snapshot=" + snapshotFilename + "\n");
+
+				for (Input input : mInputList) {
+					writer.write("input=" + input.mLength + "," + input.mLastModified + "," + input.mName + "\n");
+				}
+			}
+			finally {
+				writer.close();
+			}
+
+			OutputFiles.commit(tempManifest, manifest);
+		}
+		finally {
+			OutputFiles.discard(tempManifest);
+		}
+
+		// earlier snapshots are no longer named by the manifest
+		for (File file : listFiles(directory)) {
+			if (isSnapshot(file) && !file.getName().equals(snapshotFilename)) {
+				Files.deleteIfExists(file.toPath());
+			}
+		}
+
+		if (LOGGER.isDebugEnabled()) {
+			LOGGER.debug("Wrote checkpoint " + mSequence + " of " + mInputList.size() + " inputs and " +
+				mTable.getRowCount() + " rows to \"" + directory + "\".");
+		}
+	}
+
+	/**
+	 * Reads the checkpoint in the directory.
+	 *
+	 * @return The checkpoint, or null if there is no checkpoint in the directory, it is for another
+	 * ID column, or one of its inputs changed since it was merged.
+	 */
+	public static MergeCheckpoint read(File directory, String idColumnName) throws IOException {
+		File manifest = new File(directory, MANIFEST_FILENAME);
+
+		if (!manifest.isFile()) {
+			return null;
+		}
+
+		String checkpointIdColumnName = null;
+		String snapshotFilename = null;
+		List<Input> inputList = new ArrayList<Input>();
+		BufferedReader reader = new BufferedReader(new InputStreamReader(
+			new FileInputStream(manifest), Charsets.UTF_8));
+
+		try {
+			String line;
+
+			while ((line = reader.readLine()) != null) {
+				int separatorIdx = line.indexOf('=');
+
+				if (separatorIdx <= 0) {
+					throw new IOException("Malformed checkpoint line \"" + line + "\"");
+				}
+
+				String key = line.substring(0, separatorIdx);
+				String value = line.substring(separatorIdx + 1);
+
+				if ("idColumn".equals(key)) {
+					checkpointIdColumnName = value;
+				}
+				else if ("snapshot".equals(key)) {
+					snapshotFilename = value;
+				}
+				else if ("input".equals(key)) {
+					Input input = readInput(value);
+
+					if (input == null) {
+						return null;
+					}
+
+					inputList.add(input);
+				}
+				else {
+					throw new IOException("Unknown checkpoint key \"" + key + "\"");
+				}
+			}
+		}
+		finally {
+			reader.close();
+		}
+
+		if (snapshotFilename == null) {
+			throw new IOException("Checkpoint names no snapshot");
+		}
+		else if (!idColumnName.equals(checkpointIdColumnName)) {
+			if (LOGGER.isWarnEnabled()) {
+				LOGGER.warn("Ignoring checkpoint in \"" + directory + "\" because it is for ID column \"" +
+					checkpointIdColumnName + "\"");
+			}
+
+			return null;
+		}
+
+		InternalTable table = new ColumnarFileReader(idColumnName).process(
+			new File(directory, snapshotFilename).getPath());
+
+		if (table == null) {
+			throw new IOException("Snapshot \"" + snapshotFilename + "\" could not be read");
+		}
+
+		int sequence = Integer.parseInt(snapshotFilename.substring(SNAPSHOT_FILENAME_PREFIX.length(),
+			snapshotFilename.length() - SNAPSHOT_FILENAME_SUFFIX.length()));
+
+		return new MergeCheckpoint(sequence, inputList, table);
+	}
+
+	/**
+	 * @return The input of the manifest value, or null if the input changed since it was merged.
+	 */
+	private static Input readInput(String value) throws IOException {
+		int lengthEndIdx = value.indexOf(',');
+		int lastModifiedEndIdx = (lengthEndIdx < 0) ? -1 : value.indexOf(',', lengthEndIdx + 1);
+
+		if (lastModifiedEndIdx < 0) {
+			throw new IOException("Malformed checkpoint input \"" + value + "\"");
+		}
+
+		Input input;
+
+		try {
+			input = new Input(value.substring(lastModifiedEndIdx + 1), Long.parseLong(value.substring(0, lengthEndIdx)),
+				Long.parseLong(value.substring(lengthEndIdx + 1, lastModifiedEndIdx)));
+		}
+		catch (NumberFormatException e) {
+			throw new IOException("Malformed checkpoint input \"" + value + "\"", e);
+		}
+
+		File inputFile = new File(input.mName);
+
+		if (inputFile.length() != input.mLength || inputFile.lastModified() != input.mLastModified) {
+			if (LOGGER.isWarnEnabled()) {
+				LOGGER.warn("Ignoring checkpoint because \"" + input.mName + "\" changed since it was merged");
+			}
+
+			return null;
+		}
+
+		return input;
+	}
+
+	/**
+	 * Deletes the checkpoint in the directory, along with what is left of checkpoints being
+	 * written, and the directory if it is then empty.
+	 */
+	public static void delete(File directory) throws IOException {
+		for (File file : listFiles(directory)) {
+			String name = file.getName();
+
+			if (name.equals(MANIFEST_FILENAME) || isSnapshot(file) ||
+					(name.endsWith(".tmp") && (name.startsWith("." + MANIFEST_FILENAME + ".") ||
+						name.startsWith("." + SNAPSHOT_FILENAME_PREFIX)))) {
+				Files.deleteIfExists(file.toPath());
+			}
+		}
+
+		if (directory.isDirectory() && listFiles(directory).length == 0) {
+			Files.deleteIfExists(directory.toPath());
+		}
+	}
+
+	private static boolean isSnapshot(File file) {
+		String name = file.getName();
+
+		return name.startsWith(SNAPSHOT_FILENAME_PREFIX) && name.endsWith(SNAPSHOT_FILENAME_SUFFIX);
+	}
+
+	private static File[] listFiles(File directory) {
+		File[] files = directory.listFiles();
+
+		return (files != null) ? files : new File[0];
+	}
+
+	public int getSequence() {
+		return mSequence;
+	}
+
+	/**
+	 * @return The names of the merged inputs, in merge order.
+	 */
+	public List<String> getInputList() {
+		List<String> inputList = new ArrayList<String>(mInputList.size());
+
+		for (Input input : mInputList) {
+			inputList.add(input.mName);
+		}
+
+		return inputList;
+	}
+
+	public List<Input> getInputs() {
+		return mInputList;
+	}
+
+	public InternalTable getTable() {
+		return mTable;
+	}
+
+	/**
+	 * A merged input, along with its length and last modified time when it was merged.
+	 */
+	public static final class Input {
+		final String mName;
+
+		final long mLength;
+
+		final long mLastModified;
+
+		Input(String name, long length, long lastModified) {
+			mName = name;
+			mLength = length;
+			mLastModified = lastModified;
+		}
+
+		/**
+		 * @return The input with its current length and last modified time.
+		 */
+		public static Input of(String name) {
+			File file = new File(name);
+
+			return new Input(name, file.length(), file.lastModified());
+		}
+
+		public String getName() {
+			return mName;
+		}
+	}
+}
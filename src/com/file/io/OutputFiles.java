@@ -0,0 +1,63 @@
+package com.file.io;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * Replaces output files atomically, so that readers of an output file never see a partially
+ * written file.
+ *
+ * An output is written to a temporary file created next to it, then the temporary file (and its
+ * sidecar index, if any) is renamed over the output file.
+ */
+public class OutputFiles {
+	// Constructors
+
+	private OutputFiles() {
+	}
+
+	// Operations
+
+	/**
+	 * @return A new, empty temporary file in the directory of the output file.
+	 */
+	public static File createTempFile(File output) throws IOException {
+		File absoluteOutput = output.getAbsoluteFile();
+
+		return File.createTempFile("." + absoluteOutput.getName() + ".", ".tmp", absoluteOutput.getParentFile());
+	}
+
+	/**
+	 * Renames the temporary file and its sidecar index over the output file and its index.
+	 */
+	public static void commit(File tempOutput, File output) throws IOException {
+		moveAtomically(tempOutput, output);
+
+		File tempIndex = new File(tempOutput.getPath() + CSVIndexWriter.INDEX_FILE_SUFFIX);
+
+		if (tempIndex.exists()) {
+			moveAtomically(tempIndex, new File(output.getPath() + CSVIndexWriter.INDEX_FILE_SUFFIX));
+		}
+	}
+
+	/**
+	 * Deletes what is left of the temporary file and its sidecar index.
+	 */
+	public static void discard(File tempOutput) throws IOException {
+		Files.deleteIfExists(tempOutput.toPath());
+		Files.deleteIfExists(new File(tempOutput.getPath() + CSVIndexWriter.INDEX_FILE_SUFFIX).toPath());
+	}
+
+	private static void moveAtomically(File source, File target) throws IOException {
+		try {
+			Files.move(source.toPath(), target.toPath(),
+				StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+		}
+		catch (AtomicMoveNotSupportedException e) {
+			Files.move(source.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+		}
+	}
+}
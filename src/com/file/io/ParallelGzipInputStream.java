@@ -0,0 +1,510 @@
+package com.file.io;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.Inflater;
+
+import com.google.common.base.Throwables;
+import com.google.common.io.ByteStreams;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * Decompresses a gzip stream, inflating its members in parallel ahead of the reader.
+ *
+ * Members can only be inflated independently when their size is known before inflating them,
+ * which is the case for members carrying the block size in a "BC" extra field (BGZF, as written
+ * by bgzip). Such members are read ahead and inflated on a shared pool of threads, and their
+ * output is returned in order. From the first member without a block size on, the rest of the
+ * stream is decompressed sequentially, on a thread of its own that decompresses ahead of the
+ * reader into a bounded queue.
+ */
+public class ParallelGzipInputStream extends InputStream {
+	// Constants
+
+	private static final int GZIP_MAGIC_1 = 0x1f;
+
+	private static final int GZIP_MAGIC_2 = 0x8b;
+
+	private static final int METHOD_DEFLATE = 8;
+
+	private static final int FLAG_HEADER_CRC = 0x02;
+
+	private static final int FLAG_EXTRA = 0x04;
+
+	private static final int FLAG_NAME = 0x08;
+
+	private static final int FLAG_COMMENT = 0x10;
+
+	/**
+	 * Length of the fixed part of a member header.
+	 */
+	private static final int FIXED_HEADER_LENGTH = 10;
+
+	/**
+	 * Length of the member trailer: CRC32 and uncompressed size.
+	 */
+	private static final int TRAILER_LENGTH = 8;
+
+	/**
+	 * Maximum uncompressed size of a member with a block size, 64 KB in BGZF.
+	 */
+	private static final int MAX_BLOCK_DATA_SIZE = 64 * 1024;
+
+	/**
+	 * Size of the chunks the rest of the stream is decompressed into sequentially.
+	 */
+	private static final int CHUNK_SIZE = 64 * 1024;
+
+	/**
+	 * Marks the end of the sequentially decompressed chunks.
+	 */
+	private static final byte[] END_OF_CHUNKS = new byte[0];
+
+	private static final int NUM_THREADS = Runtime.getRuntime().availableProcessors();
+
+	/**
+	 * Threads inflating members, shared by all streams.
+	 */
+	private static final ExecutorService INFLATERS = Executors.newFixedThreadPool(NUM_THREADS,
+		new ThreadFactoryBuilder().setNameFormat("gzip-inflater-%d").setDaemon(true).build());
+
+	/**
+	 * Threads decompressing the rest of a stream sequentially, one per stream.
+	 */
+	private static final ExecutorService DECOMPRESSORS = Executors.newCachedThreadPool(
+		new ThreadFactoryBuilder().setNameFormat("gzip-decompressor-%d").setDaemon(true).build());
+
+	// Attributes
+
+	/**
+	 * Maximum number of members read ahead of the reader.
+	 */
+	private final int mMaxPending;
+
+	/**
+	 * Whether the compressed input has been consumed, or handed over to sequential decompression.
+	 */
+	private boolean mInputDone;
+
+	private boolean mFirstMember = true;
+
+	/**
+	 * Inflated member being read, and the read position in it.
+	 */
+	private byte[] mCurrent = new byte[0];
+
+	private int mPos;
+
+	// Associations
+
+	private final DataInputStream mIn;
+
+	private final ArrayDeque<Future<byte[]>> mPending = new ArrayDeque<Future<byte[]>>();
+
+	/**
+	 * Sequential decompression of the rest of the stream, null while members are inflated in parallel.
+	 */
+	private InputStream mSequential;
+
+	/**
+	 * Chunks decompressed sequentially ahead of the reader, null until the stream is decompressed
+	 * sequentially and once the last chunk is consumed.
+	 */
+	private BlockingQueue<byte[]> mChunks;
+
+	private Future<Void> mDecompressor;
+
+	// Constructors
+
+	public ParallelGzipInputStream(InputStream in) {
+		this(in, 2 * NUM_THREADS);
+	}
+
+	public ParallelGzipInputStream(InputStream in, int maxPending) {
+		if (maxPending <= 0) {
+			throw new IllegalStateException("Number of members read ahead must be positive.");
+		}
+
+		mIn = new DataInputStream(new BufferedInputStream(in, 64 * 1024));
+		mMaxPending = maxPending;
+	}
+
+	// Operations
+
+	@Override
+	public int read() throws IOException {
+		if (!fill()) {
+			return -1;
+		}
+
+		return mCurrent[mPos++] & 0xFF;
+	}
+
+	@Override
+	public int read(byte[] b, int off, int len) throws IOException {
+		if (len == 0) {
+			return 0;
+		}
+		else if (!fill()) {
+			return -1;
+		}
+
+		int n = Math.min(len, mCurrent.length - mPos);
+
+		System.arraycopy(mCurrent, mPos, b, off, n);
+		mPos += n;
+
+		return n;
+	}
+
+	/**
+	 * Makes sure there are inflated bytes left in the current member.
+	 *
+	 * @return False, if the stream is consumed.
+	 */
+	private boolean fill() throws IOException {
+		while (mPos == mCurrent.length) {
+			readAhead();
+
+			Future<byte[]> next = mPending.poll();
+
+			if (next == null) {
+				if (mChunks == null || !takeChunk()) {
+					return false;
+				}
+
+				continue;
+			}
+
+			try {
+				mCurrent = next.get();
+			}
+			catch (ExecutionException e) {
+				throw new IOException("Failed to inflate gzip member.", e.getCause());
+			}
+			catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+
+				throw new IOException("Interrupted while inflating gzip member.", e);
+			}
+
+			mPos = 0;
+		}
+
+		return true;
+	}
+
+	/**
+	 * Takes the next sequentially decompressed chunk as the current one.
+	 *
+	 * @return False, if all chunks are consumed.
+	 */
+	private boolean takeChunk() throws IOException {
+		byte[] chunk;
+
+		try {
+			chunk = mChunks.take();
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+
+			throw new IOException("Interrupted while decompressing gzip stream.", e);
+		}
+
+		if (chunk == END_OF_CHUNKS) {
+			mChunks = null;
+
+			try {
+				// rethrows the failure that ended the chunks, if any
+				mDecompressor.get();
+			}
+			catch (ExecutionException e) {
+				Throwables.propagateIfPossible(e.getCause(), IOException.class);
+
+				throw new IOException("Failed to decompress gzip stream.", e.getCause());
+			}
+			catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+
+				throw new IOException("Interrupted while decompressing gzip stream.", e);
+			}
+
+			return false;
+		}
+
+		mCurrent = chunk;
+		mPos = 0;
+
+		return true;
+	}
+
+	/**
+	 * Decompresses the rest of the stream, starting with the member header already read, on a
+	 * thread of its own.
+	 */
+	private void startSequential(byte[] header) throws IOException {
+		final InputStream sequential = new GZIPInputStream(
+			new SequenceInputStream(new ByteArrayInputStream(header), mIn), 64 * 1024);
+		final BlockingQueue<byte[]> chunks = new ArrayBlockingQueue<byte[]>(mMaxPending);
+
+		mSequential = sequential;
+		mChunks = chunks;
+		mDecompressor = DECOMPRESSORS.submit(new Callable<Void>() {
+			@Override
+			public Void call() throws Exception {
+				Exception failure = null;
+
+				try {
+					decompress(sequential, chunks);
+				}
+				catch (InterruptedException e) {
+					// the stream was closed
+					return null;
+				}
+				catch (Exception e) {
+					failure = e;
+				}
+
+				chunks.put(END_OF_CHUNKS);
+
+				if (failure != null) {
+					throw failure;
+				}
+
+				return null;
+			}
+		});
+	}
+
+	private static void decompress(InputStream in, BlockingQueue<byte[]> chunks)
+			throws IOException, InterruptedException {
+		while (true) {
+			byte[] chunk = new byte[CHUNK_SIZE];
+			int n = ByteStreams.read(in, chunk, 0, CHUNK_SIZE);
+
+			if (n > 0) {
+				chunks.put((n < CHUNK_SIZE) ? Arrays.copyOf(chunk, n) : chunk);
+			}
+
+			if (n < CHUNK_SIZE) {
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Reads members and schedules them for inflation until enough members are pending.
+	 */
+	private void readAhead() throws IOException {
+		while (!mInputDone && mPending.size() < mMaxPending) {
+			int first = mIn.read();
+
+			if (first == -1) {
+				if (mFirstMember) {
+					throw new EOFException("Empty gzip stream.");
+				}
+
+				mInputDone = true;
+
+				return;
+			}
+
+			int second = mIn.read();
+
+			if (first != GZIP_MAGIC_1 || second != GZIP_MAGIC_2) {
+				if (mFirstMember) {
+					throw new IOException("Not in gzip format.");
+				}
+
+				// like GZIPInputStream, ignore trailing data that is not a gzip member
+				mInputDone = true;
+
+				return;
+			}
+
+			byte[] header = new byte[FIXED_HEADER_LENGTH];
+
+			header[0] = (byte) first;
+			header[1] = (byte) second;
+			mIn.readFully(header, 2, FIXED_HEADER_LENGTH - 2);
+
+			int flags = header[3] & 0xFF;
+			int blockSize = -1;
+
+			if ((flags & FLAG_EXTRA) != 0) {
+				int extraLength = mIn.readUnsignedByte() | (mIn.readUnsignedByte() << 8);
+
+				header = Arrays.copyOf(header, FIXED_HEADER_LENGTH + 2 + extraLength);
+				header[FIXED_HEADER_LENGTH] = (byte) extraLength;
+				header[FIXED_HEADER_LENGTH + 1] = (byte) (extraLength >> 8);
+				mIn.readFully(header, FIXED_HEADER_LENGTH + 2, extraLength);
+
+				blockSize = getBlockSize(header, FIXED_HEADER_LENGTH + 2, extraLength);
+			}
+
+			mFirstMember = false;
+
+			if ((header[2] & 0xFF) != METHOD_DEFLATE || blockSize < header.length + TRAILER_LENGTH) {
+				// size of the member is unknown, decompress the rest sequentially
+				startSequential(header);
+				mInputDone = true;
+
+				return;
+			}
+
+			final byte[] member = Arrays.copyOf(header, blockSize);
+			final int headerLength = header.length;
+
+			mIn.readFully(member, headerLength, blockSize - headerLength);
+
+			mPending.add(INFLATERS.submit(new Callable<byte[]>() {
+				@Override
+				public byte[] call() throws IOException {
+					return inflateMember(member, headerLength);
+				}
+			}));
+		}
+	}
+
+	/**
+	 * @return Total size of the member from the "BC" extra subfield, or -1 if there is none.
+	 */
+	private static int getBlockSize(byte[] header, int offset, int length) {
+		int end = offset + length;
+
+		while (offset + 4 <= end) {
+			int subfieldLength = (header[offset + 2] & 0xFF) | ((header[offset + 3] & 0xFF) << 8);
+
+			if (header[offset] == 'B' && header[offset + 1] == 'C' && subfieldLength == 2 &&
+					offset + 6 <= end) {
+				return ((header[offset + 4] & 0xFF) | ((header[offset + 5] & 0xFF) << 8)) + 1;
+			}
+
+			offset += 4 + subfieldLength;
+		}
+
+		return -1;
+	}
+
+	/**
+	 * Inflates a complete member and verifies its trailer.
+	 */
+	private static byte[] inflateMember(byte[] member, int headerLength) throws IOException {
+		int flags = member[3] & 0xFF;
+		int trailer = member.length - TRAILER_LENGTH;
+		int pos = headerLength;
+
+		if ((flags & FLAG_NAME) != 0) {
+			pos = skipString(member, pos, trailer);
+		}
+
+		if ((flags & FLAG_COMMENT) != 0) {
+			pos = skipString(member, pos, trailer);
+		}
+
+		if ((flags & FLAG_HEADER_CRC) != 0) {
+			pos += 2;
+		}
+
+		long expectedCrc = readIntLE(member, trailer) & 0xFFFFFFFFL;
+		int size = readIntLE(member, trailer + 4);
+
+		// the size is read from the input, check it before allocating for it
+		if (pos > trailer || size < 0 || size > MAX_BLOCK_DATA_SIZE) {
+			throw new IOException("Corrupt gzip member: invalid block.");
+		}
+
+		byte[] inflated = new byte[size];
+		Inflater inflater = new Inflater(true);
+
+		try {
+			inflater.setInput(member, pos, trailer - pos);
+
+			int n = 0;
+
+			while (n < size) {
+				int count = inflater.inflate(inflated, n, size - n);
+
+				if (count == 0 && (inflater.finished() || inflater.needsInput())) {
+					break;
+				}
+
+				n += count;
+			}
+
+			if (n != size) {
+				throw new IOException("Corrupt gzip member: size mismatch.");
+			}
+		}
+		catch (DataFormatException e) {
+			throw new IOException("Corrupt gzip member.", e);
+		}
+		finally {
+			inflater.end();
+		}
+
+		CRC32 crc = new CRC32();
+
+		crc.update(inflated, 0, size);
+
+		if (crc.getValue() != expectedCrc) {
+			throw new IOException("Corrupt gzip member: CRC mismatch.");
+		}
+
+		return inflated;
+	}
+
+	/**
+	 * @return The position after the zero terminated string at the position.
+	 */
+	private static int skipString(byte[] member, int pos, int end) throws IOException {
+		while (pos < end) {
+			if (member[pos++] == 0) {
+				return pos;
+			}
+		}
+
+		throw new IOException("Corrupt gzip member: unterminated header field.");
+	}
+
+	private static int readIntLE(byte[] bytes, int offset) {
+		return (bytes[offset] & 0xFF) | ((bytes[offset + 1] & 0xFF) << 8) |
+			((bytes[offset + 2] & 0xFF) << 16) | ((bytes[offset + 3] & 0xFF) << 24);
+	}
+
+	@Override
+	public void close() throws IOException {
+		for (Future<byte[]> pending : mPending) {
+			pending.cancel(true);
+		}
+
+		mPending.clear();
+
+		if (mDecompressor != null) {
+			mDecompressor.cancel(true);
+		}
+
+		if (mSequential != null) {
+			mSequential.close();
+		}
+
+		mIn.close();
+	}
+}
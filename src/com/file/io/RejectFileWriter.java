@@ -0,0 +1,269 @@
+package com.file.io;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import com.file.transform.RejectSink;
+import com.google.common.base.Charsets;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hashing;
+
+import au.com.bytecode.opencsv.CSVWriter;
+
+/**
+ * Counts the rows of an input that a table rejects, and writes up to a maximum number of them to
+ * a reject file, so that rejecting a row costs little more than counting it.
+ *
+ * For an input "first.csv", rejected rows are written to "first.csv.1a2b3c4d.rejects" in the reject
+ * directory, a CSV file with the columns of the input preceded by a "reason" column. The hex digits
+ * hash the absolute path of the input, so that inputs of the same name in different directories
+ * get their own reject files. The file is created with the first rejected row and renamed into
+ * place once the input is read.
+ *
+ * Rows are never logged. Rejections are logged without their data: the first one of every reason,
+ * then at most one sample every {@link #LOG_INTERVAL_MILLIS} with the counts so far, and a summary
+ * once the input is read.
+ */
+public class RejectFileWriter implements RejectSink {
+	// Constants
+
+	/**
+	 * The Logger instance.
+	 */
+	private static final Log LOGGER = LogFactory.getLog(RejectFileWriter.class);
+
+	public static final String REJECTS_FILE_SUFFIX = ".rejects";
+
+	/**
+	 * Default maximum number of rows written to a reject file.
+	 */
+	public static final int DEFAULT_MAX_REJECTS = 10000;
+
+	private static final String REASON_COLUMN_NAME = "reason";
+
+	/**
+	 * Minimum time between two sampled log messages.
+	 */
+	private static final long LOG_INTERVAL_MILLIS = 10000;
+
+	/**
+	 * The time to log is only checked every this many rejected rows (a power of two).
+	 */
+	private static final int LOG_CHECK_INTERVAL = 1024;
+
+	// Attributes
+
+	private final String mInputFilename;
+
+	private final List<String> mColNameList;
+
+	/**
+	 * The reject file, null if rejected rows are only counted.
+	 */
+	private final File mRejects;
+
+	private final int mMaxRejects;
+
+	private File mTempRejects;
+
+	private final long[] mNumRejectedByReason = new long[Reason.values().length];
+
+	/**
+	 * Reasons whose first rejection is logged already.
+	 */
+	private final EnumSet<Reason> mWarnedReasonSet = EnumSet.noneOf(Reason.class);
+
+	private long mNumRejected;
+
+	private int mNumWritten;
+
+	private long mLastLogNanos;
+
+	// Associations
+
+	private CSVWriter mWriter;
+
+	// Constructors
+
+	/**
+	 * @param rejectDirectory Directory of the reject file, or null to only count rejected rows.
+	 */
+	public RejectFileWriter(String inputFilename, List<String> colNameList, File rejectDirectory,
+			int maxRejects) {
+		if (maxRejects < 0) {
+			throw new IllegalStateException("Maximum number of rejected rows must not be negative");
+		}
+
+		mInputFilename = inputFilename;
+		mColNameList = new ArrayList<String>(colNameList);
+		mRejects = (rejectDirectory != null && maxRejects > 0) ?
+			new File(rejectDirectory, getRejectsFilename(inputFilename)) : null;
+		mMaxRejects = maxRejects;
+	}
+
+	// Operations
+
+	@Override
+	public void reject(Reason reason, List<String> dataRow) {
+		long numRejected = ++mNumRejected;
+
+		mNumRejectedByReason[reason.ordinal()]++;
+
+		if (mWarnedReasonSet.add(reason)) {
+			if (LOGGER.isWarnEnabled()) {
+				LOGGER.warn("Skipping rows with " + reason.getDescription() + " in \"" + mInputFilename + "\"");
+			}
+
+			mLastLogNanos = System.nanoTime();
+		}
+		else if ((numRejected & (LOG_CHECK_INTERVAL - 1)) == 0 &&
+				System.nanoTime() - mLastLogNanos >= TimeUnit.MILLISECONDS.toNanos(LOG_INTERVAL_MILLIS)) {
+			if (LOGGER.isWarnEnabled()) {
+				LOGGER.warn("Skipped " + getCounts() + " rows in \"" + mInputFilename + "\" so far");
+			}
+
+			mLastLogNanos = System.nanoTime();
+		}
+
+		if (mRejects != null && mNumWritten < mMaxRejects) {
+			write(reason, dataRow);
+		}
+	}
+
+	/**
+	 * Continues the logging of the writer of an earlier read of the input, which was discarded, so
+	 * that rows rejected again by this read are not logged again.
+	 */
+	public void continueLogging(RejectFileWriter previous) {
+		mWarnedReasonSet.addAll(previous.mWarnedReasonSet);
+		mLastLogNanos = previous.mLastLogNanos;
+	}
+
+	/**
+	 * @return The name of the reject file of the input, e.g. "first.csv.1a2b3c4d.rejects".
+	 */
+	static String getRejectsFilename(String inputFilename) {
+		File input = new File(inputFilename);
+		HashCode pathHash = Hashing.murmur3_32().hashString(input.getAbsolutePath(), Charsets.UTF_8);
+
+		return input.getName() + "." + pathHash + REJECTS_FILE_SUFFIX;
+	}
+
+	private void write(Reason reason, List<String> dataRow) {
+		try {
+			if (mWriter == null) {
+				open();
+			}
+
+			String[] row = new String[dataRow.size() + 1];
+
+			row[0] = reason.name();
+
+			for (int i = 0; i < dataRow.size(); i++) {
+				row[i + 1] = dataRow.get(i);
+			}
+
+			mWriter.writeNext(row);
+			mNumWritten++;
+		}
+		catch (IOException e) {
+			// rows are still counted, only no longer written
+			if (LOGGER.isWarnEnabled()) {
+				LOGGER.warn("Failed to write rejected rows to \"" + mRejects + "\"", e);
+			}
+
+			mNumWritten = mMaxRejects;
+		}
+	}
+
+	private void open() throws IOException {
+		File directory = mRejects.getAbsoluteFile().getParentFile();
+
+		if (!directory.isDirectory() && !directory.mkdirs()) {
+			throw new IOException("Unable to create reject directory \"" + directory + "\"");
+		}
+
+		mTempRejects = OutputFiles.createTempFile(mRejects);
+		mWriter = new CSVWriter(new BufferedWriter(new OutputStreamWriter(
+			new FileOutputStream(mTempRejects), Charsets.UTF_8)));
+
+		String[] header = new String[mColNameList.size() + 1];
+
+		header[0] = REASON_COLUMN_NAME;
+
+		for (int i = 0; i < mColNameList.size(); i++) {
+			header[i + 1] = mColNameList.get(i);
+		}
+
+		mWriter.writeNext(header);
+	}
+
+	/**
+	 * Renames the reject file into place, if any row was written, and logs the counts of rejected
+	 * rows.
+	 */
+	public void close() throws IOException {
+		if (mWriter != null) {
+			mWriter.close();
+			mWriter = null;
+
+			OutputFiles.commit(mTempRejects, mRejects);
+		}
+
+		if (mNumRejected > 0 && LOGGER.isWarnEnabled()) {
+			LOGGER.warn("Skipped " + getCounts() + " rows in \"" + mInputFilename + "\"" +
+				((mNumWritten > 0) ? ", " + mNumWritten + " of them written to \"" + mRejects + "\"" : ""));
+		}
+	}
+
+	/**
+	 * Deletes what is left of the reject file, if it was not renamed into place.
+	 */
+	public void discard() throws IOException {
+		if (mWriter != null) {
+			mWriter.close();
+			mWriter = null;
+		}
+
+		if (mTempRejects != null) {
+			OutputFiles.discard(mTempRejects);
+		}
+	}
+
+	/**
+	 * @return The number of rejected rows of every reason, e.g. "12 (10 with wrong number of
+	 * columns, 2 with duplicate ID)".
+	 */
+	private String getCounts() {
+		StringBuilder sb = new StringBuilder().append(mNumRejected).append(" (");
+		String separator = "";
+
+		for (Reason reason : Reason.values()) {
+			if (mNumRejectedByReason[reason.ordinal()] > 0) {
+				sb.append(separator).append(mNumRejectedByReason[reason.ordinal()]).append(" with ")
+					.append(reason.getDescription());
+				separator = ", ";
+			}
+		}
+
+		return sb.append(')').toString();
+	}
+
+	public long getNumRejected() {
+		return mNumRejected;
+	}
+
+	public long getNumRejected(Reason reason) {
+		return mNumRejectedByReason[reason.ordinal()];
+	}
+}
@@ -0,0 +1,368 @@
+package com.file.io;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Pattern;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import com.file.transform.InternalTable;
+import com.file.transform.RowKey;
+import com.file.type.OutputIndexType;
+import com.google.common.base.Charsets;
+import com.google.common.base.Throwables;
+import com.google.common.io.Files;
+
+import au.com.bytecode.opencsv.CSVWriter;
+
+/**
+ * Writes a table as several CSV files, each holding a contiguous range of IDs, in parallel.
+ *
+ * For an output file "combined.csv", the shards are written to "combined-00003-00000.csv",
+ * "combined-00003-00001.csv", ... in the same directory, in ID order, each with the header row.
+ * The first number is the generation of the output, one more than that of the shards already in
+ * the directory, so that the shards of an output never replace those of the previous one. The
+ * manifest "combined.csv.manifest" lists every shard with its number of rows and the values of
+ * the ID columns of its first and last row, one manifest column per ID column.
+ *
+ * The manifest is renamed into place once all shards are written, which switches readers from
+ * one output to the next at once: a reader of the previous manifest only ever opens shards of the
+ * previous output. These are deleted right after, so such a reader may then fail to open them,
+ * but never reads rows that do not match the manifest. Shards of a failed output are deleted.
+ */
+public class ShardedCSVFileWriter {
+	// Constants
+
+	/**
+	 * The Logger instance.
+	 */
+	private static final Log LOGGER = LogFactory.getLog(ShardedCSVFileWriter.class);
+
+	public static final String MANIFEST_FILE_SUFFIX = ".manifest";
+
+	private static final String FILE_COLUMN_NAME = "file";
+
+	private static final String ROWS_COLUMN_NAME = "rows";
+
+	private static final String FIRST_ID_COLUMN_PREFIX = "first_";
+
+	private static final String LAST_ID_COLUMN_PREFIX = "last_";
+
+	// Attributes
+
+	private final String mOutputFilename;
+
+	private final int mNumShards;
+
+	private final OutputIndexType.IndexType mIndexType;
+
+	private final int mIndexBlockSize;
+
+	// Associations
+
+	private final InternalTable mTable;
+
+	// Constructors
+
+	public ShardedCSVFileWriter(String filename, InternalTable table, int numShards,
+			OutputIndexType.IndexType indexType, int indexBlockSize) {
+		if (numShards <= 0) {
+			throw new IllegalStateException("Number of shards must be positive");
+		}
+
+		mOutputFilename = filename;
+		mTable = table;
+		mNumShards = numShards;
+		mIndexType = indexType;
+		mIndexBlockSize = indexBlockSize;
+	}
+
+	// Operations
+
+	public void writeToFiles() throws IOException {
+		int generation = getLastGeneration() + 1;
+		List<RowKey> splitKeyList = mTable.getSplitKeys(mNumShards);
+		// an empty table still gets one (empty) shard
+		int numShards = Math.max(1, splitKeyList.size());
+		List<File> shardFileList = new ArrayList<File>(numShards);
+		List<CSVFileWriter> shardWriterList = new ArrayList<CSVFileWriter>(numShards);
+		ExecutorService workers = Executors.newFixedThreadPool(
+			Math.min(numShards, Runtime.getRuntime().availableProcessors()));
+		boolean written = false;
+
+		try {
+			List<Future<CSVFileWriter>> resultList = new ArrayList<Future<CSVFileWriter>>(numShards);
+
+			for (int i = 0; i < numShards; i++) {
+				final File shardFile = getShardFile(generation, i);
+				final RowKey fromKey = (i < splitKeyList.size()) ? splitKeyList.get(i) : null;
+				final RowKey toKey = (i + 1 < splitKeyList.size()) ? splitKeyList.get(i + 1) : null;
+
+				shardFileList.add(shardFile);
+				resultList.add(workers.submit(new Callable<CSVFileWriter>() {
+					@Override
+					public CSVFileWriter call() throws IOException {
+						return writeShard(shardFile, fromKey, toKey);
+					}
+				}));
+			}
+
+			for (Future<CSVFileWriter> result : resultList) {
+				try {
+					shardWriterList.add(result.get());
+				}
+				catch (ExecutionException e) {
+					Throwables.propagateIfPossible(e.getCause(), IOException.class);
+
+					throw new IllegalStateException("Failed to write shard.", e.getCause());
+				}
+				catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+
+					throw new IOException("Interrupted while writing shards.", e);
+				}
+			}
+
+			writeManifest(shardWriterList, shardFileList);
+
+			written = true;
+		}
+		finally {
+			workers.shutdown();
+
+			if (!written) {
+				discardShards(workers, shardFileList);
+			}
+		}
+
+		deleteStaleShards(shardFileList);
+
+		if (LOGGER.isDebugEnabled()) {
+			LOGGER.debug("Wrote " + mTable.getRowCount() + " rows to " + numShards + " shards of \"" +
+				mOutputFilename + "\".");
+		}
+	}
+
+	/**
+	 * @return The file of the shard of the generation, "name-GGGGG-NNNNN.ext" in the directory of
+	 * the output file.
+	 */
+	File getShardFile(int generation, int shard) {
+		File output = new File(mOutputFilename).getAbsoluteFile();
+		String extension = Files.getFileExtension(output.getName());
+		String baseName = Files.getNameWithoutExtension(output.getName());
+		String shardName = String.format("%s-%05d-%05d", baseName, generation, shard) +
+			(extension.isEmpty() ? "" : "." + extension);
+
+		return new File(output.getParentFile(), shardName);
+	}
+
+	/**
+	 * @return The highest generation of the shards of the output file in its directory, or 0 if
+	 * there are none.
+	 */
+	private int getLastGeneration() {
+		File output = new File(mOutputFilename).getAbsoluteFile();
+		int generation = 0;
+
+		for (File file : listFiles(output.getParentFile())) {
+			Matcher matcher = getShardPattern(output).matcher(file.getName());
+
+			if (matcher.matches()) {
+				generation = Math.max(generation, Integer.parseInt(matcher.group(1)));
+			}
+		}
+
+		return generation;
+	}
+
+	/**
+	 * Deletes the shards of a failed output, once the workers writing them are done.
+	 */
+	private void discardShards(ExecutorService workers, List<File> shardFileList) {
+		try {
+			workers.awaitTermination(Long.MAX_VALUE, TimeUnit.DAYS);
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+
+		for (File shardFile : shardFileList) {
+			try {
+				OutputFiles.discard(shardFile);
+			}
+			catch (IOException e) {
+				// keep the error that failed the output
+				if (LOGGER.isWarnEnabled()) {
+					LOGGER.warn("Failed to delete shard \"" + shardFile + "\".", e);
+				}
+			}
+		}
+	}
+
+	/**
+	 * @return True, if the file is the manifest or a shard, listed by the manifest or not, of the
+	 * output file.
+	 */
+	public static boolean isShardOrManifest(String outputFilename, File file) {
+		File output = new File(outputFilename).getAbsoluteFile();
+		File absoluteFile = file.getAbsoluteFile();
+
+		return isShard(output, absoluteFile) || (output.getParentFile().equals(absoluteFile.getParentFile()) &&
+			absoluteFile.getName().equals(output.getName() + MANIFEST_FILE_SUFFIX));
+	}
+
+	/**
+	 * @return True, if the file is named like a shard, "name-GGGGG-NNNNN.ext", of the output file.
+	 */
+	private static boolean isShard(File output, File file) {
+		return output.getParentFile().equals(file.getParentFile()) &&
+			getShardPattern(output).matcher(file.getName()).matches();
+	}
+
+	/**
+	 * @return The pattern of the names of the shards of the output file, capturing the generation.
+	 */
+	private static Pattern getShardPattern(File output) {
+		String extension = Files.getFileExtension(output.getName());
+
+		return Pattern.compile(Pattern.quote(Files.getNameWithoutExtension(output.getName())) + "-(\\d{5})-\\d{5}" +
+			(extension.isEmpty() ? "" : Pattern.quote("." + extension)));
+	}
+
+	private static File[] listFiles(File directory) {
+		File[] files = directory.listFiles();
+
+		return (files != null) ? files : new File[0];
+	}
+
+	/**
+	 * Deletes the shards of the output file that the manifest does not list, i.e. those of earlier
+	 * outputs.
+	 */
+	private void deleteStaleShards(List<File> shardFileList) throws IOException {
+		File output = new File(mOutputFilename).getAbsoluteFile();
+		Set<File> shardFileSet = new HashSet<File>(shardFileList);
+
+		for (File file : listFiles(output.getParentFile())) {
+			File absoluteFile = file.getAbsoluteFile();
+
+			if (isShard(output, absoluteFile) && !shardFileSet.contains(absoluteFile)) {
+				if (LOGGER.isDebugEnabled()) {
+					LOGGER.debug("Deleting stale shard \"" + absoluteFile + "\".");
+				}
+
+				// along with its index, if any
+				OutputFiles.discard(absoluteFile);
+			}
+		}
+	}
+
+	/**
+	 * Writes the rows from fromKey, inclusive, to toKey, exclusive, to the shard file.
+	 *
+	 * @return The writer, holding the number of rows and the first and last key written.
+	 */
+	private CSVFileWriter writeShard(File shardFile, RowKey fromKey, RowKey toKey) throws IOException {
+		File tempShard = OutputFiles.createTempFile(shardFile);
+
+		try {
+			CSVFileWriter shardWriter = new CSVFileWriter(tempShard.getPath(), mTable, fromKey, toKey,
+				mIndexType, mIndexBlockSize);
+
+			shardWriter.writeToFile();
+
+			OutputFiles.commit(tempShard, shardFile);
+
+			return shardWriter;
+		}
+		finally {
+			OutputFiles.discard(tempShard);
+		}
+	}
+
+	private void writeManifest(List<CSVFileWriter> shardWriterList, List<File> shardFileList) throws IOException {
+		File manifest = new File(mOutputFilename + MANIFEST_FILE_SUFFIX);
+		File tempManifest = OutputFiles.createTempFile(manifest);
+
+		try {
+			CSVWriter writer = new CSVWriter(new OutputStreamWriter(
+				new FileOutputStream(tempManifest), Charsets.UTF_8));
+
+			try {
+				List<String> idColNameList = getIdColumnNames();
+				int numIdCols = idColNameList.size();
+				String[] row = new String[2 + 2 * numIdCols];
+
+				row[0] = FILE_COLUMN_NAME;
+				row[1] = ROWS_COLUMN_NAME;
+
+				for (int j = 0; j < numIdCols; j++) {
+					row[2 + j] = FIRST_ID_COLUMN_PREFIX + idColNameList.get(j);
+					row[2 + numIdCols + j] = LAST_ID_COLUMN_PREFIX + idColNameList.get(j);
+				}
+
+				writer.writeNext(row);
+
+				for (int i = 0; i < shardWriterList.size(); i++) {
+					CSVFileWriter shardWriter = shardWriterList.get(i);
+
+					// one column per ID column, so that values holding the separator stay unambiguous
+					row[0] = shardFileList.get(i).getName();
+					row[1] = String.valueOf(shardWriter.getNumRows());
+					setIdValues(row, 2, numIdCols, shardWriter.getFirstKey());
+					setIdValues(row, 2 + numIdCols, numIdCols, shardWriter.getLastKey());
+
+					writer.writeNext(row);
+				}
+			}
+			finally {
+				writer.close();
+			}
+
+			OutputFiles.commit(tempManifest, manifest);
+		}
+		finally {
+			OutputFiles.discard(tempManifest);
+		}
+	}
+
+	/**
+	 * @return The names of the ID columns, in the order of the values of the keys.
+	 */
+	private List<String> getIdColumnNames() {
+		List<String> colNameList = new ArrayList<String>(mTable.getColumnNameSet());
+		List<String> idColNameList = new ArrayList<String>();
+
+		for (int idColIdx : mTable.getIdColumnIndexes()) {
+			idColNameList.add(colNameList.get(idColIdx));
+		}
+
+		return idColNameList;
+	}
+
+	/**
+	 * Sets the values of the key, or empty values if the key is null, from the index of the row.
+	 */
+	private static void setIdValues(String[] row, int from, int numIdCols, RowKey key) {
+		String[] values = (key != null) ? key.getValues() : null;
+
+		for (int j = 0; j < numIdCols; j++) {
+			row[from + j] = (values != null) ? values[j] : "";
+		}
+	}
+}
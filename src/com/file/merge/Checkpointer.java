@@ -0,0 +1,144 @@
+package com.file.merge;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import com.file.io.MergeCheckpoint;
+import com.file.transform.InternalTable;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * Checkpoints a merge periodically, so that it can be resumed after a failure.
+ *
+ * Once the interval has passed since the last checkpoint was written, the next merged input
+ * triggers a checkpoint of a snapshot of the merged table (see {@link InternalTable#snapshot()}),
+ * written by a background thread while merging goes on. The snapshot shares the columns of the
+ * merged table rather than copying them, so taking it does not stall merging, and at most one
+ * snapshot is held. However long a checkpoint takes to write, merging gets the interval to itself
+ * before the next one.
+ */
+public class Checkpointer {
+	// Constants
+
+	/**
+	 * The Logger instance.
+	 */
+	private static final Log LOGGER = LogFactory.getLog(Checkpointer.class);
+
+	// Attributes
+
+	private final File mDirectory;
+
+	private final long mIntervalMillis;
+
+	/**
+	 * Time the last checkpoint was written, or the merge started.
+	 */
+	private volatile long mLastCheckpointMillis;
+
+	/**
+	 * Sequence number of the last checkpoint.
+	 */
+	private int mSequence;
+
+	/**
+	 * The merged inputs, in merge order.
+	 */
+	private final List<MergeCheckpoint.Input> mMergedInputList = new ArrayList<MergeCheckpoint.Input>();
+
+	// Associations
+
+	private final ExecutorService mWriter = Executors.newSingleThreadExecutor(
+		new ThreadFactoryBuilder().setNameFormat("merge-checkpoint-%d").setDaemon(true).build());
+
+	/**
+	 * The checkpoint being written, if any.
+	 */
+	private Future<?> mPendingWrite;
+
+	// Constructors
+
+	/**
+	 * @param restored The checkpoint the merge resumes from, or null.
+	 */
+	public Checkpointer(File directory, long intervalMillis, MergeCheckpoint restored) {
+		if (intervalMillis <= 0) {
+			throw new IllegalStateException("Checkpoint interval must be positive");
+		}
+
+		mDirectory = directory;
+		mIntervalMillis = intervalMillis;
+		mLastCheckpointMillis = System.currentTimeMillis();
+
+		if (restored != null) {
+			mSequence = restored.getSequence();
+			mMergedInputList.addAll(restored.getInputs());
+		}
+	}
+
+	// Operations
+
+	/**
+	 * Records that the input was merged into the merged table, along with the version of the input
+	 * merged, and checkpoints the merged table if it is time to.
+	 */
+	public void merged(String input, InternalTable mergedTable) {
+		mMergedInputList.add(MergeCheckpoint.Input.of(input));
+
+		if ((mPendingWrite != null && !mPendingWrite.isDone()) ||
+				System.currentTimeMillis() - mLastCheckpointMillis < mIntervalMillis) {
+			return;
+		}
+
+		mSequence++;
+
+		// the merged table goes on changing, so a snapshot of it is written
+		final MergeCheckpoint checkpoint =
+			new MergeCheckpoint(mSequence, mMergedInputList, mergedTable.snapshot());
+
+		mPendingWrite = mWriter.submit(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					checkpoint.write(mDirectory);
+				}
+				catch (IOException e) {
+					if (LOGGER.isWarnEnabled()) {
+						LOGGER.warn("Failed to write checkpoint to \"" + mDirectory + "\"", e);
+					}
+				}
+				finally {
+					mLastCheckpointMillis = System.currentTimeMillis();
+				}
+			}
+		});
+	}
+
+	/**
+	 * Waits for the checkpoint being written, if any, and stops the background thread.
+	 */
+	public void close() {
+		mWriter.shutdown();
+
+		if (mPendingWrite != null) {
+			try {
+				mPendingWrite.get();
+			}
+			catch (ExecutionException e) {
+				throw new IllegalStateException("Failed to write checkpoint.", e.getCause());
+			}
+			catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+}
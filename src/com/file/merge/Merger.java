@@ -1,13 +1,17 @@
 package com.file.merge;
 
-import java.util.ArrayList;
-import java.util.Iterator;
-import java.util.List;
 import java.util.Set;
 
 import com.file.transform.InternalTable;
 
 public class Merger {
+	// Attributes
+
+	/**
+	 * Whether only the rows of the first table are kept, other tables only adding data to them.
+	 */
+	private boolean mSemiJoin;
+
 	// Associations
 
 	/**
@@ -15,6 +19,19 @@ public class Merger {
 	 */
 	private InternalTable mMergedTable;
 
+	// Constructors
+
+	public Merger() {
+	}
+
+	/**
+	 * Merges into a partially merged table, e.g. restored from a checkpoint, which is then changed
+	 * by the merger rather than copied.
+	 */
+	public Merger(InternalTable mergedTable) {
+		mMergedTable = mergedTable;
+	}
+
 	// Operations
 
 	/**
@@ -41,32 +58,30 @@ public class Merger {
 		Set<String> colNameSet = table.getColumnNameSet();
 
 		if (mMergedTable == null) {
-			mMergedTable = new InternalTable(new ArrayList<String>(colNameSet), table.getIDColumnName());
-
-			for (Iterator<List<String>> rowItr = table.getRowItr(); rowItr.hasNext(); ) {
-				mMergedTable.addData(rowItr.next());
-			}
+			// the table may be shared, e.g. cached, so it is copied rather than merged into
+			mMergedTable = new InternalTable(table);
 		}
 		else {
 			Set<String> mergedTableColNameSet = mMergedTable.getColumnNameSet();
-			int idIdx = table.getIdColumnIndex();
 
 			for (String colName : colNameSet) {
 				if (!mergedTableColNameSet.contains(colName)) {
-					mMergedTable.addColumn(colName);
+					mMergedTable.addColumn(colName, table.getColumnType(colName));
 				}
 
-				int colIdx = table.getColumnIndex(colName);
-
-				for (Iterator<List<String>> colDataItr = table.getColumnItr(colName); colDataItr.hasNext(); ) {
-					List<String> colDataList = colDataItr.next();
-
-					mMergedTable.addRowData(colDataList.get(idIdx), colName, colDataList.get(colIdx));
-				}
+				mMergedTable.addColumnData(table, colName, !mSemiJoin);
 			}
 		}
 	}
 
+	/**
+	 * @param semiJoin True to keep only the rows of the first table merged, e.g. a driver table,
+	 * which the other tables only add columns and data to. False to keep the rows of all tables.
+	 */
+	public void setSemiJoin(boolean semiJoin) {
+		mSemiJoin = semiJoin;
+	}
+
 	/**
 	 * @return The merged table.
 	 */
@@ -0,0 +1,37 @@
+package com.file.transform;
+
+import com.google.common.base.Strings;
+
+/**
+ * Values of one column of an {@link InternalTable}, indexed by row.
+ *
+ * Rows that were never set are null.
+ */
+abstract class Column {
+	// Operations
+
+	abstract ColumnType getType();
+
+	/**
+	 * @return The text of the value of the row, or null.
+	 */
+	abstract String get(int row);
+
+	abstract void set(int row, String value);
+
+	/**
+	 * @return A copy of the column, which can be changed independently of this column.
+	 */
+	abstract Column copy();
+
+	boolean isNullOrEmpty(int row) {
+		return Strings.isNullOrEmpty(get(row));
+	}
+
+	/**
+	 * Sets the value of the row to the value of a row of another column.
+	 */
+	void set(int row, Column source, int sourceRow) {
+		set(row, source.get(sourceRow));
+	}
+}
@@ -0,0 +1,367 @@
+package com.file.transform;
+
+/**
+ * Type of the values of a column: text, or integers, fixed scale decimals or ISO dates stored as
+ * primitive longs.
+ *
+ * A value is only of a primitive type if rendering it back gives the exact same text, e.g. "7" is
+ * a LONG but "007" and "+7" are not, so typed columns never change the data written out. Text is
+ * checked to be in this canonical form as it is parsed, rather than by rendering the value back.
+ */
+public final class ColumnType {
+	// Constants
+
+	public enum DataType {
+	    STRING,
+	    LONG,
+	    DECIMAL,
+	    DATE
+	}
+
+	public static final ColumnType STRING = new ColumnType(DataType.STRING, 0);
+
+	public static final ColumnType LONG = new ColumnType(DataType.LONG, 0);
+
+	public static final ColumnType DATE = new ColumnType(DataType.DATE, 0);
+
+	/**
+	 * Returned by {@link #encode(String)} for text that is not a value of the type.
+	 */
+	static final long NOT_ENCODABLE = Long.MIN_VALUE;
+
+	/**
+	 * Maximum number of digits of a decimal, so that its unscaled value always fits a long.
+	 */
+	private static final int MAX_DECIMAL_DIGITS = 18;
+
+	private static final long[] POWERS_OF_TEN = new long[MAX_DECIMAL_DIGITS + 1];
+
+	/**
+	 * Days from 0000-03-01 to 1970-01-01.
+	 */
+	private static final long EPOCH_DAY_OFFSET = 719468;
+
+	static {
+		POWERS_OF_TEN[0] = 1;
+
+		for (int i = 1; i < POWERS_OF_TEN.length; i++) {
+			POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10;
+		}
+	}
+
+	// Attributes
+
+	private final DataType mDataType;
+
+	/**
+	 * Number of digits after the decimal point of a DECIMAL.
+	 */
+	private final int mScale;
+
+	// Constructors
+
+	private ColumnType(DataType dataType, int scale) {
+		mDataType = dataType;
+		mScale = scale;
+	}
+
+	// Operations
+
+	public static ColumnType decimal(int scale) {
+		if (scale <= 0 || scale >= MAX_DECIMAL_DIGITS) {
+			throw new IllegalStateException("Scale of a decimal must be between 1 and " + (MAX_DECIMAL_DIGITS - 1));
+		}
+
+		return new ColumnType(DataType.DECIMAL, scale);
+	}
+
+	/**
+	 * Infers the type of a column from a sample of its values.
+	 *
+	 * @return The first of LONG, DECIMAL and DATE that every value of the sample but null and empty
+	 * ones is of, or STRING.
+	 */
+	public static ColumnType infer(Iterable<String> values) {
+		String firstValue = null;
+
+		for (String value : values) {
+			if (value != null && !value.isEmpty()) {
+				firstValue = value;
+
+				break;
+			}
+		}
+
+		if (firstValue == null) {
+			return STRING;
+		}
+
+		int pointIdx = firstValue.indexOf('.');
+		ColumnType[] candidates = {
+			LONG,
+			(pointIdx > 0 && pointIdx < firstValue.length() - 1 &&
+				firstValue.length() - pointIdx - 1 < MAX_DECIMAL_DIGITS) ?
+					decimal(firstValue.length() - pointIdx - 1) : null,
+			DATE
+		};
+
+		for (ColumnType candidate : candidates) {
+			if (candidate != null && candidate.isTypeOf(values)) {
+				return candidate;
+			}
+		}
+
+		return STRING;
+	}
+
+	private boolean isTypeOf(Iterable<String> values) {
+		for (String value : values) {
+			if (value != null && !value.isEmpty() && encode(value) == NOT_ENCODABLE) {
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+	public DataType getDataType() {
+		return mDataType;
+	}
+
+	public int getScale() {
+		return mScale;
+	}
+
+	/**
+	 * @return An empty column of this type.
+	 */
+	Column newColumn() {
+		return (mDataType == DataType.STRING) ? new StringColumn() : new PrimitiveColumn(this);
+	}
+
+	/**
+	 * @return The value of the text, or {@link #NOT_ENCODABLE} if the text is not a value of this
+	 * type.
+	 */
+	long encode(String text) {
+		long value;
+
+		// only canonical text, which renders back the same, is a value
+		switch (mDataType) {
+		case LONG:
+			value = parseLong(text);
+			break;
+		case DECIMAL:
+			value = parseDecimal(text);
+			break;
+		case DATE:
+			value = parseDate(text);
+			break;
+		default:
+			return NOT_ENCODABLE;
+		}
+
+		return value;
+	}
+
+	/**
+	 * @return The text of the value.
+	 */
+	String decode(long value) {
+		switch (mDataType) {
+		case LONG:
+			return Long.toString(value);
+		case DECIMAL:
+			return formatDecimal(value);
+		case DATE:
+			return formatDate(value);
+		default:
+			throw new IllegalStateException(mDataType + " values are not encoded.");
+		}
+	}
+
+	/**
+	 * @return The value of the optionally signed digits, or {@link #NOT_ENCODABLE}.
+	 */
+	private static long parseDigits(String text, int from, int to, boolean signed) {
+		boolean negative = signed && from < to && text.charAt(from) == '-';
+		int start = negative ? from + 1 : from;
+
+		if (start == to || to - start > MAX_DECIMAL_DIGITS) {
+			return NOT_ENCODABLE;
+		}
+
+		long value = 0;
+
+		for (int i = start; i < to; i++) {
+			char c = text.charAt(i);
+
+			if (c < '0' || c > '9') {
+				return NOT_ENCODABLE;
+			}
+
+			value = value * 10 + (c - '0');
+		}
+
+		return negative ? -value : value;
+	}
+
+	/**
+	 * @return True, if the digits have no leading zero, "0" itself aside.
+	 */
+	private static boolean hasNoLeadingZero(String text, int from, int to) {
+		return to - from == 1 || text.charAt(from) != '0';
+	}
+
+	/**
+	 * @return The value of canonical integer text, neither "-0" nor with leading zeros, or
+	 * {@link #NOT_ENCODABLE}.
+	 */
+	private static long parseLong(String text) {
+		boolean negative = !text.isEmpty() && text.charAt(0) == '-';
+		long value = parseDigits(text, 0, text.length(), true);
+
+		if (value == NOT_ENCODABLE || !hasNoLeadingZero(text, negative ? 1 : 0, text.length()) ||
+				(negative && value == 0)) {
+			return NOT_ENCODABLE;
+		}
+
+		return value;
+	}
+
+	/**
+	 * @return The unscaled value of canonical decimal text, with exactly the digits of the scale
+	 * after the point, neither "-0.0" nor with leading zeros, or {@link #NOT_ENCODABLE}.
+	 */
+	private long parseDecimal(String text) {
+		int pointIdx = text.length() - mScale - 1;
+
+		if (pointIdx <= 0 || text.charAt(pointIdx) != '.') {
+			return NOT_ENCODABLE;
+		}
+
+		boolean negative = text.charAt(0) == '-';
+		long integer = parseDigits(text, 0, pointIdx, true);
+		long fraction = parseDigits(text, pointIdx + 1, text.length(), false);
+
+		if (integer == NOT_ENCODABLE || fraction == NOT_ENCODABLE ||
+				Math.abs(integer) >= POWERS_OF_TEN[MAX_DECIMAL_DIGITS - mScale] ||
+				!hasNoLeadingZero(text, negative ? 1 : 0, pointIdx)) {
+			return NOT_ENCODABLE;
+		}
+
+		long unscaled = Math.abs(integer) * POWERS_OF_TEN[mScale] + fraction;
+
+		if (negative && unscaled == 0) {
+			return NOT_ENCODABLE;
+		}
+
+		return negative ? -unscaled : unscaled;
+	}
+
+	private String formatDecimal(long unscaled) {
+		long abs = Math.abs(unscaled);
+		String fraction = Long.toString(abs % POWERS_OF_TEN[mScale]);
+		StringBuilder sb = new StringBuilder(24);
+
+		if (unscaled < 0) {
+			sb.append('-');
+		}
+
+		sb.append(abs / POWERS_OF_TEN[mScale]).append('.');
+
+		for (int i = fraction.length(); i < mScale; i++) {
+			sb.append('0');
+		}
+
+		return sb.append(fraction).toString();
+	}
+
+	/**
+	 * @return The number of days since 1970-01-01 of a "yyyy-MM-dd" date, zero padded and existing
+	 * in the Gregorian calendar, or {@link #NOT_ENCODABLE}.
+	 */
+	private static long parseDate(String text) {
+		if (text.length() != 10 || text.charAt(4) != '-' || text.charAt(7) != '-') {
+			return NOT_ENCODABLE;
+		}
+
+		long year = parseDigits(text, 0, 4, false);
+		long month = parseDigits(text, 5, 7, false);
+		long day = parseDigits(text, 8, 10, false);
+
+		if (year == NOT_ENCODABLE || month < 1 || month > 12 || day < 1 || day > getDaysInMonth(year, month)) {
+			return NOT_ENCODABLE;
+		}
+
+		// days of a calendar starting on March 1st, so that the leap day ends the year
+		year -= (month <= 2) ? 1 : 0;
+
+		long era = ((year >= 0) ? year : year - 399) / 400;
+		long yearOfEra = year - era * 400;
+		long dayOfYear = (153 * (month + ((month > 2) ? -3 : 9)) + 2) / 5 + day - 1;
+		long dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+
+		return era * 146097 + dayOfEra - EPOCH_DAY_OFFSET;
+	}
+
+	private static long getDaysInMonth(long year, long month) {
+		if (month == 2) {
+			boolean leapYear = (year % 4 == 0 && year % 100 != 0) || year % 400 == 0;
+
+			return leapYear ? 29 : 28;
+		}
+
+		return (month == 4 || month == 6 || month == 9 || month == 11) ? 30 : 31;
+	}
+
+	private static String formatDate(long epochDay) {
+		long days = epochDay + EPOCH_DAY_OFFSET;
+		long era = ((days >= 0) ? days : days - 146096) / 146097;
+		long dayOfEra = days - era * 146097;
+		long yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra / 146096) / 365;
+		long dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+		long shiftedMonth = (5 * dayOfYear + 2) / 153;
+		long day = dayOfYear - (153 * shiftedMonth + 2) / 5 + 1;
+		long month = shiftedMonth + ((shiftedMonth < 10) ? 3 : -9);
+		long year = yearOfEra + era * 400 + ((month <= 2) ? 1 : 0);
+
+		char[] text = new char[10];
+
+		formatDigits(text, 0, 4, year);
+		text[4] = '-';
+		formatDigits(text, 5, 2, month);
+		text[7] = '-';
+		formatDigits(text, 8, 2, day);
+
+		return new String(text);
+	}
+
+	private static void formatDigits(char[] text, int from, int numDigits, long value) {
+		for (int i = from + numDigits - 1; i >= from; i--) {
+			text[i] = (char) ('0' + value % 10);
+			value /= 10;
+		}
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (!(obj instanceof ColumnType)) {
+			return false;
+		}
+
+		ColumnType other = (ColumnType) obj;
+
+		return mDataType == other.mDataType && mScale == other.mScale;
+	}
+
+	@Override
+	public int hashCode() {
+		return mDataType.hashCode() * 31 + mScale;
+	}
+
+	@Override
+	public String toString() {
+		return (mDataType == DataType.DECIMAL) ? mDataType + "(" + mScale + ")" : mDataType.toString();
+	}
+}
@@ -0,0 +1,84 @@
+package com.file.transform;
+
+import java.util.Set;
+
+import com.google.common.hash.BloomFilter;
+
+/**
+ * Set of the row IDs of a table, e.g. of a driver input, which rows of other tables are checked
+ * against before they are added.
+ *
+ * The IDs of a table of up to the Bloom threshold rows are looked up in the key set of the table
+ * itself, which takes no memory of its own. As the filter only lets the IDs of the table through,
+ * rows merged into the table afterwards do not add IDs to it. Beyond the threshold, the IDs are
+ * kept in a Bloom filter, which takes about 10 bits per ID at a 1% false positive rate, but also
+ * lets that fraction of other IDs through.
+ */
+public final class IdFilter {
+	// Attributes
+
+	private final int mNumIds;
+
+	// Associations
+
+	/**
+	 * The exact set of IDs, a view of the key set of the table, null if the IDs are in the Bloom
+	 * filter.
+	 */
+	private final Set<RowKey> mIdSet;
+
+	private final BloomFilter<RowKey> mBloomFilter;
+
+	// Constructors
+
+	private IdFilter(int numIds, Set<RowKey> idSet, BloomFilter<RowKey> bloomFilter) {
+		mNumIds = numIds;
+		mIdSet = idSet;
+		mBloomFilter = bloomFilter;
+	}
+
+	// Operations
+
+	/**
+	 * @param bloomThreshold Number of rows of the table beyond which its IDs are kept in a Bloom
+	 * filter.
+	 * @param falsePositiveRate Expected rate of other IDs that a Bloom filter lets through.
+	 *
+	 * @return The filter of the IDs of the table.
+	 */
+	public static IdFilter of(InternalTable table, int bloomThreshold, double falsePositiveRate) {
+		Set<RowKey> keySet = table.getRowKeySet();
+
+		if (keySet.size() <= bloomThreshold) {
+			return new IdFilter(keySet.size(), keySet, null);
+		}
+
+		BloomFilter<RowKey> bloomFilter = BloomFilter.create(RowKey.funnel(), keySet.size(), falsePositiveRate);
+
+		for (RowKey key : keySet) {
+			bloomFilter.put(key);
+		}
+
+		return new IdFilter(keySet.size(), null, bloomFilter);
+	}
+
+	/**
+	 * @return False, if the ID is not in the set. Otherwise, true (or, with a Bloom filter,
+	 * probably true).
+	 */
+	public boolean mightContain(RowKey id) {
+		return (mIdSet != null) ? mIdSet.contains(id) : mBloomFilter.mightContain(id);
+	}
+
+	/**
+	 * @return True, if the filter lets through its IDs only. Otherwise, false.
+	 */
+	public boolean isExact() {
+		return mIdSet != null;
+	}
+
+	@Override
+	public String toString() {
+		return (isExact() ? "exact set" : "Bloom filter") + " of " + mNumIds + " IDs";
+	}
+}
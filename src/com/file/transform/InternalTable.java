@@ -1,23 +1,32 @@
 package com.file.transform;
 
+import java.util.AbstractList;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.SortedMap;
 import java.util.TreeMap;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
+import com.google.common.base.Splitter;
 import com.google.common.base.Strings;
+import com.google.common.collect.Iterables;
+import com.google.common.collect.Maps;
 
 
 /**
  * Internal table.
  */
-public class InternalTable {
+public class InternalTable implements RowSink {
 	// Constants
 
 	/**
@@ -25,31 +34,61 @@ public class InternalTable {
 	 */
 	private static final Log LOGGER = LogFactory.getLog(InternalTable.class);
 
+	/**
+	 * Separates the names of the columns of a composite ID.
+	 */
+	public static final char ID_COLUMN_NAME_SEPARATOR = ',';
+
 	// Attributes
 
 	private int mNumCols;
 
 	/**
-	 * Index of the ID column in the table. 
+	 * Indexes of the ID columns in the table, in the order the ID columns were named.
 	 */
-	private int mIDIdx = -1;
+	private int[] mIDIdxs;
 
 	/**
-	 * Name of the ID column.
+	 * Name of the ID column, or separated names of the columns of a composite ID.
 	 */
 	private String mIdColumnName;
 
+	/**
+	 * Number of rows stored in the columns.
+	 */
+	private int mNumRows;
+
+	private boolean mColumnTypesInferred;
+
 	// Associations
 
 	/**
-	 * Map of rows containing Set of columns indexed by primary key.
+	 * Map of row index in the columns, indexed by primary key.
 	 *
 	 * Must be able to grow in size to accommodate for initial table creation step and merge
 	 * operations.
 	 * 
 	 * Must sort data as it is put into the table.
+	 *
+	 * Null for a snapshot until it is needed, see {@link #getRowByID()}.
+	 */
+	private TreeMap<RowKey, Integer> mRowByID;
+
+	/**
+	 * Rows of a snapshot in key order, from which its map of row index is only built if needed.
+	 * Null for other tables.
+	 */
+	private int[] mRowOrder;
+
+	/**
+	 * Values of the columns, in column order.
 	 */
-	private TreeMap<String, List<String>> mDataByID;
+	private List<Column> mColumnList;
+
+	/**
+	 * Indexes of the columns shared with a snapshot, which are copied before they are changed.
+	 */
+	private BitSet mSharedColumns = new BitSet();
 
 	/**
 	 * Map of column index, indexed by column name.
@@ -58,9 +97,36 @@ public class InternalTable {
 	 */
 	private LinkedHashMap<String, Integer> mColIdxByNameMap;
 
+	/**
+	 * Sink of the rows skipped by {@link #addData(List)}, null if they are only skipped. Not copied
+	 * with the table.
+	 */
+	private RejectSink mRejectSink;
+
+	/**
+	 * Filter of the IDs of the rows that may be added, null if rows of any ID may be added. Not
+	 * copied with the table.
+	 */
+	private IdFilter mIdFilter;
+
 	// Constructors
 
+	/**
+	 * @param colNameList The column names.
+	 * @param idColumnName Name of the ID column, or names of the columns of a composite ID
+	 * separated by {@link #ID_COLUMN_NAME_SEPARATOR}.
+	 */
 	public InternalTable(List<String> colNameList, String idColumnName) {
+		this(colNameList, idColumnName, null);
+	}
+
+	/**
+	 * @param colNameList The column names.
+	 * @param idColumnName Name of the ID column, or names of the columns of a composite ID
+	 * separated by {@link #ID_COLUMN_NAME_SEPARATOR}.
+	 * @param colTypeList The column types, or null for text columns only.
+	 */
+	public InternalTable(List<String> colNameList, String idColumnName, List<ColumnType> colTypeList) {
 		if (colNameList == null) {
 			throw new IllegalStateException("Must provide a header.");
 		}
@@ -80,15 +146,114 @@ public class InternalTable {
 
 		addColumnNameRow(colNameList, idColumnName);
 
-		mDataByID = new TreeMap<String, List<String>>();
+		if (colTypeList != null && colTypeList.size() != numCols) {
+			throw new IllegalStateException("Number of column types does not match the number of columns.");
+		}
+
+		mRowByID = new TreeMap<RowKey, Integer>();
+		mColumnList = new ArrayList<Column>(numCols);
 
-		if (mIDIdx == -1) {
-			throw new IllegalStateException("ID column not found in the table.");
+		for (int i = 0; i < numCols; i++) {
+			mColumnList.add(((colTypeList != null) ? colTypeList.get(i) : ColumnType.STRING).newColumn());
+		}
+	}
+
+	/**
+	 * Copies a table, so that the copy can be changed without changing the table.
+	 */
+	public InternalTable(InternalTable table) {
+		mNumCols = table.mNumCols;
+		mIDIdxs = table.mIDIdxs.clone();
+		mIdColumnName = table.mIdColumnName;
+		mNumRows = table.mNumRows;
+		mColumnTypesInferred = table.mColumnTypesInferred;
+		mRowByID = new TreeMap<RowKey, Integer>(table.getRowByID());
+		mColIdxByNameMap = new LinkedHashMap<String, Integer>(table.mColIdxByNameMap);
+		mColumnList = new ArrayList<Column>(mNumCols);
+
+		for (Column column : table.mColumnList) {
+			mColumnList.add(column.copy());
 		}
 	}
 
+	/**
+	 * Takes a snapshot of the table, see {@link #snapshot()}.
+	 */
+	private InternalTable(InternalTable table, int[] rowOrder) {
+		mNumCols = table.mNumCols;
+		mIDIdxs = table.mIDIdxs.clone();
+		mIdColumnName = table.mIdColumnName;
+		mNumRows = table.mNumRows;
+		mColumnTypesInferred = table.mColumnTypesInferred;
+		mRowOrder = rowOrder;
+		mColIdxByNameMap = new LinkedHashMap<String, Integer>(table.mColIdxByNameMap);
+		mColumnList = new ArrayList<Column>(table.mColumnList);
+		mSharedColumns.set(0, mNumCols);
+	}
+
 	// Operations
 
+	/**
+	 * Takes a snapshot of the table: a table holding the rows of this table as they are now, which
+	 * another thread may read while this table goes on changing.
+	 *
+	 * Rather than copying the data, the snapshot shares the columns of this table, which either
+	 * table copies before it changes them, so that only the columns changed after the snapshot is
+	 * taken are ever copied. Taking the snapshot only costs the order of the rows, one int per row.
+	 * The snapshot builds its own map of row index only if it needs it, e.g. to look up a key.
+	 */
+	public InternalTable snapshot() {
+		// the order of the rows of a snapshot never changes
+		int[] rowOrder = mRowOrder;
+
+		if (rowOrder == null) {
+			rowOrder = new int[mRowByID.size()];
+
+			int i = 0;
+
+			for (int row : mRowByID.values()) {
+				rowOrder[i++] = row;
+			}
+		}
+
+		mSharedColumns.set(0, mNumCols);
+
+		return new InternalTable(this, rowOrder);
+	}
+
+	/**
+	 * @return The map of row index, built from the rows of a snapshot the first time it is needed.
+	 */
+	private TreeMap<RowKey, Integer> getRowByID() {
+		if (mRowByID == null) {
+			mRowByID = new TreeMap<RowKey, Integer>();
+
+			for (int row : mRowOrder) {
+				mRowByID.put(RowKey.of(new Row(row), mIDIdxs), row);
+			}
+
+			mRowOrder = null;
+		}
+
+		return mRowByID;
+	}
+
+	/**
+	 * @return The column, to be changed, copied first if it is shared with a snapshot.
+	 */
+	private Column getWritableColumn(int colIdx) {
+		Column column = mColumnList.get(colIdx);
+
+		if (mSharedColumns.get(colIdx)) {
+			column = column.copy();
+
+			mColumnList.set(colIdx, column);
+			mSharedColumns.clear(colIdx);
+		}
+
+		return column;
+	}
+
 	/**
 	 * Add row of column names to the internal representation of the table.
 	 *
@@ -98,10 +263,16 @@ public class InternalTable {
 	private void addColumnNameRow(List<String> colNameList, String idColumnName) {
 		if (colNameList != null) {
 			if (mNumCols == colNameList.size()) {
-				// we should determine the index for the ID column
+				// we should determine the indexes for the ID columns
 				// and ensure column names are unique
 				if (!Strings.isNullOrEmpty(idColumnName)) {
-					
+					String[] idColNames = Iterables.toArray(
+						Splitter.on(ID_COLUMN_NAME_SEPARATOR).trimResults().split(idColumnName), String.class);
+
+					mIDIdxs = new int[idColNames.length];
+
+					Arrays.fill(mIDIdxs, -1);
+
 					for (int i = 0; i < colNameList.size(); i++) {
 						String colName = colNameList.get(i);
 
@@ -110,13 +281,22 @@ public class InternalTable {
 								"\" is not unique.");
 						}
 
-						if (idColumnName.equalsIgnoreCase(colName)) {
-							mIDIdx = i;
-							mIdColumnName = idColumnName;
+						for (int j = 0; j < idColNames.length; j++) {
+							if (idColNames[j].equalsIgnoreCase(colName)) {
+								mIDIdxs[j] = i;
+								mIdColumnName = idColumnName;
+							}
 						}
 
 						mColIdxByNameMap.put(colName, i);
 					}
+
+					for (int j = 0; j < idColNames.length; j++) {
+						if (mIDIdxs[j] == -1) {
+							throw new IllegalStateException("ID column \"" + idColNames[j] +
+								"\" not found in the table.");
+						}
+					}
 				}
 			}
 			else {
@@ -127,7 +307,7 @@ public class InternalTable {
 	}
 
 	/**
-	 * Adds a new column.
+	 * Adds a new text column.
 	 *
 	 * @param colName The name of the column to add.
 	 *
@@ -135,15 +315,27 @@ public class InternalTable {
 	 * or if colName is null or empty string.
 	 */
 	public boolean addColumn(String colName) {
+		return addColumn(colName, ColumnType.STRING);
+	}
+
+	/**
+	 * Adds a new column.
+	 *
+	 * @param colName The name of the column to add.
+	 * @param colType The type of the column to add.
+	 *
+	 * @return True, if the new column was added to the table. False, if the column already exists
+	 * or if colName is null or empty string.
+	 */
+	public boolean addColumn(String colName, ColumnType colType) {
 		if (!Strings.isNullOrEmpty(colName)) {
 			if (!mColIdxByNameMap.containsKey(colName)) {
 				mColIdxByNameMap.put(colName, mNumCols);
 
 				mNumCols++;
 
-				for (List<String> colDataList : mDataByID.values()) {
-					colDataList.add(null);
-				}
+				// all rows are null in the new column
+				mColumnList.add(colType.newColumn());
 
 				return true;
 			}
@@ -163,7 +355,7 @@ public class InternalTable {
 	}
 
 	/**
-	 * Adds data for the row indexed by provided id.
+	 * Adds data for the row indexed by provided id, of a table with a single ID column.
 	 *
 	 * @param id The row index id.
 	 * @param colName The name of the column to add the data to.
@@ -172,7 +364,25 @@ public class InternalTable {
 	 * @return True, if adding data was successful. Otherwise, false.
 	 */
 	public boolean addRowData(String id, String colName, String value) {
-		if (Strings.isNullOrEmpty(id)) {
+		if (mIDIdxs.length != 1) {
+			throw new IllegalStateException("Table has " + mIDIdxs.length +
+				" ID columns, the row must be indexed by a key of all of their values.");
+		}
+
+		return addRowData(RowKey.of(id), colName, value);
+	}
+
+	/**
+	 * Adds data for the row indexed by provided key.
+	 *
+	 * @param id The row index key.
+	 * @param colName The name of the column to add the data to.
+	 * @param value The data to set.
+	 *
+	 * @return True, if adding data was successful. Otherwise, false.
+	 */
+	public boolean addRowData(RowKey id, String colName, String value) {
+		if (id == null) {
 			if (LOGGER.isDebugEnabled()) {
 				LOGGER.debug("Must provide an id for the row.");
 			}
@@ -183,97 +393,180 @@ public class InternalTable {
 			}
 		}
 		else {
-			List<String> rowDataList = mDataByID.get(id);
 			int colIdx = mColIdxByNameMap.get(colName);
+			int row = getOrAddRow(id, colIdx, true);
 
-			if (rowDataList == null) {
-				rowDataList = new ArrayList<String>(mNumCols);
+			if (row >= 0) {
+				getWritableColumn(colIdx).set(row, value);
+			}
 
-				for (int i = 0; i < mNumCols; i++) {
-					String valueToSet = null;
+			return true;
+		}
 
-					if (i == mIDIdx) {
-						valueToSet = id;
-					}
-					else if (i == colIdx) {
-						valueToSet = value;
-					}
+		return false;
+	}
 
-					rowDataList.add(i, valueToSet);
-				}
+	/**
+	 * Adds the data of a column of another table, row by row as {@link #addRowData(RowKey, String,
+	 * String)} does, copying typed values as they are.
+	 *
+	 * @param table The table to add the data of.
+	 * @param colName The name of the column, in both tables.
+	 */
+	public void addColumnData(InternalTable table, String colName) {
+		addColumnData(table, colName, true);
+	}
+
+	/**
+	 * Adds the data of a column of another table, as {@link #addColumnData(InternalTable, String)}
+	 * does.
+	 *
+	 * @param addRows True to add the rows of the other table that this table does not have, false
+	 * to only add data to the rows of this table.
+	 */
+	public void addColumnData(InternalTable table, String colName, boolean addRows) {
+		int colIdx = mColIdxByNameMap.get(colName);
+		Column sourceColumn = table.mColumnList.get(table.getColumnIndex(colName));
+
+		for (Map.Entry<RowKey, Integer> rowEntry : table.getRowByID().entrySet()) {
+			int row = getOrAddRow(rowEntry.getKey(), colIdx, addRows);
+
+			if (row >= 0) {
+				getWritableColumn(colIdx).set(row, sourceColumn, rowEntry.getValue());
 			}
-			else {
-				// do not replace existing value in the column unless its null or empty string
-				// merged tables gets priority over new table being merged in
-				// for instance, if merged table contains column "name" and data "Homer"
-				// new table has the same column "name" and data "Bart"
-				// In this case, "Homer" wins this conflict
-				// if merged table contains an empty string or null value for "name" column,
-				// then, this null or empty string in the merged table will be replaced by
-				// data from the new table
-				if (Strings.isNullOrEmpty(rowDataList.get(colIdx))) {
-					rowDataList.set(colIdx, value);
-				}
+		}
+	}
+
+	/**
+	 * Finds the row of the key, adding it if needed and allowed by addRows and the ID filter, and
+	 * decides whether its value in the column is to be set.
+	 *
+	 * @return The row, or -1 if the row holds a value in the column already or is not added.
+	 */
+	private int getOrAddRow(RowKey id, int colIdx, boolean addRows) {
+		Integer row = getRowByID().get(id);
+
+		if (row == null) {
+			if (!addRows || (mIdFilter != null && !mIdFilter.mightContain(id))) {
+				return -1;
 			}
 
-			mDataByID.put(id, rowDataList);
+			String[] idValues = id.getValues();
 
-			return true;
+			if (idValues.length != mIDIdxs.length) {
+				throw new IllegalStateException("Key " + id + " has " + idValues.length +
+					" values, but the table has " + mIDIdxs.length + " ID columns.");
+			}
+
+			row = mNumRows++;
+
+			for (int j = 0; j < mIDIdxs.length; j++) {
+				getWritableColumn(mIDIdxs[j]).set(row, idValues[j]);
+			}
+
+			mRowByID.put(id, row);
+
+			// a new row takes the value, unless the column is an ID column, which is set already
+			for (int idIdx : mIDIdxs) {
+				if (idIdx == colIdx) {
+					return -1;
+				}
+			}
+
+			return row;
 		}
 
-		return false;
+		// do not replace existing value in the column unless its null or empty string
+		// merged tables gets priority over new table being merged in
+		// for instance, if merged table contains column "name" and data "Homer"
+		// new table has the same column "name" and data "Bart"
+		// In this case, "Homer" wins this conflict
+		// if merged table contains an empty string or null value for "name" column,
+		// then, this null or empty string in the merged table will be replaced by
+		// data from the new table
+		return mColumnList.get(colIdx).isNullOrEmpty(row) ? row : -1;
+	}
+
+	/**
+	 * Adds a row of data, as {@link #addData(List)} does. The row is not kept.
+	 */
+	@Override
+	public void addRow(List<String> dataRow) {
+		addData(dataRow);
 	}
 
 	/**
 	 * Add row of data to the internal representation of the table.
 	 *
-	 * @param dataRow The data row.
+	 * @param dataRow The data row, which is not kept.
 	 */
 	public void addData(List<String> dataRow) {
 		if (dataRow != null) {
 			int rowSize = dataRow.size();
 
 			if (mNumCols == rowSize) {
-				List<String> colDataList = new ArrayList<String>(mNumCols);
-				String id = null;
+				RowKey id = RowKey.of(dataRow, mIDIdxs);
 
-				for (int i = 0; i < rowSize; i++) {
-					String colData = dataRow.get(i);
+				if (id == null) {
+					reject(RejectSink.Reason.NULL_ID, dataRow);
 
-					if (i == mIDIdx) {
-						if (Strings.isNullOrEmpty(colData)) {
-							if (LOGGER.isDebugEnabled()) {
-								LOGGER.debug("Column ID must not be null. Skipping row.");
-							}
+					return;
+				}
 
-							continue;
-						}
+				if (mIdFilter != null && !mIdFilter.mightContain(id)) {
+					return;
+				}
 
-						if (mDataByID.containsKey(colData)) {
-							if (LOGGER.isDebugEnabled()) {
-								LOGGER.debug("Duplicate primary key \"" + colData + "\" found for. Skipping row");
-							}
+				if (getRowByID().containsKey(id)) {
+					reject(RejectSink.Reason.DUPLICATE_ID, dataRow);
 
-							continue;
-						}
+					return;
+				}
 
-						id = colData;
-					}
-					
-					colDataList.add(colData);
+				int row = mNumRows++;
+
+				for (int i = 0; i < mNumCols; i++) {
+					getWritableColumn(i).set(row, dataRow.get(i));
 				}
 
-				mDataByID.put(id, colDataList);
+				mRowByID.put(id, row);
 			}
 			else {
 				// do not abandon execution if one row is smaller or larger in size
-				if (LOGGER.isWarnEnabled()) { // may not want to log table data due to customer data confidentiality concerns
-					LOGGER.warn("Skipping data row as it does not contain required number of columns.\n" + dataRow);
-				}
+				reject(RejectSink.Reason.MALFORMED, dataRow);
 			}
 		}
 	}
 
+	/**
+	 * Skips a row, handing it to the reject sink if any. Rows are not logged due to customer data
+	 * confidentiality concerns.
+	 */
+	private void reject(RejectSink.Reason reason, List<String> dataRow) {
+		if (mRejectSink != null) {
+			mRejectSink.reject(reason, dataRow);
+		}
+		else if (LOGGER.isDebugEnabled()) {
+			LOGGER.debug("Skipping row with " + reason.getDescription() + ".");
+		}
+	}
+
+	/**
+	 * @param idFilter The filter of the IDs of the rows that may be added, or null to add rows of
+	 * any ID. Rows of other IDs are dropped, without being rejected.
+	 */
+	public void setIdFilter(IdFilter idFilter) {
+		mIdFilter = idFilter;
+	}
+
+	/**
+	 * @param rejectSink The sink of the rows {@link #addData(List)} skips, or null to skip them
+	 * silently.
+	 */
+	public void setRejectSink(RejectSink rejectSink) {
+		mRejectSink = rejectSink;
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * @see java.lang.Object#toString()
@@ -296,7 +589,7 @@ public class InternalTable {
 		sb.append("\n");
 
 		// Print data
-		for (Iterator<List<String>> rowItr = mDataByID.values().iterator(); rowItr.hasNext();) {
+		for (Iterator<List<String>> rowItr = getRowItr(); rowItr.hasNext();) {
 			Iterator<String> colItr = rowItr.next().iterator();
 
 			for (; colItr.hasNext(); ) {
@@ -315,8 +608,18 @@ public class InternalTable {
 		return sb.toString();
 	}
 
+	/**
+	 * @return Index of the ID column, or of the first column of a composite ID.
+	 */
 	public int getIdColumnIndex() {
-		return mIDIdx;
+		return mIDIdxs[0];
+	}
+
+	/**
+	 * @return Indexes of the ID columns, in the order the ID columns were named.
+	 */
+	public int[] getIdColumnIndexes() {
+		return mIDIdxs.clone();
 	}
 
 	public int getColumnIndex(String colName) {
@@ -331,7 +634,7 @@ public class InternalTable {
 
 	public Iterator<List<String>> getColumnItr(final String colName) {
 		return new Iterator<List<String>>() {
-			final Iterator<List<String>> rowItr = mDataByID.values().iterator();
+			final Iterator<List<String>> rowItr = getRowItr();
 
 			@Override
 			public boolean hasNext() {
@@ -360,19 +663,141 @@ public class InternalTable {
 		return mIdColumnName;
 	}
 
+	/**
+	 * @return The keys of the rows, in key order.
+	 */
+	public Set<RowKey> getRowKeySet() {
+		return Collections.unmodifiableSet(getRowByID().keySet());
+	}
+
+	/**
+	 * @return Iterator over the rows and their keys, in key order.
+	 */
+	public Iterator<Map.Entry<RowKey, List<String>>> getRowEntryItr() {
+		return getRowEntryItr(null, null);
+	}
+
+	/**
+	 * @param fromKey Key of the first row, inclusive, or null to start at the first row.
+	 * @param toKey Key after the last row, exclusive, or null to end at the last row.
+	 *
+	 * @return Iterator over the rows in the key range and their keys, in key order.
+	 */
+	public Iterator<Map.Entry<RowKey, List<String>>> getRowEntryItr(RowKey fromKey, RowKey toKey) {
+		SortedMap<RowKey, Integer> rowByID = getRowByID();
+
+		if (fromKey != null) {
+			rowByID = rowByID.tailMap(fromKey);
+		}
+
+		if (toKey != null) {
+			rowByID = rowByID.headMap(toKey);
+		}
+
+		final Iterator<Entry<RowKey, Integer>> rowByIDEntryItr = rowByID.entrySet().iterator();
+
+		return new Iterator<Map.Entry<RowKey, List<String>>>() {
+			final Iterator<Entry<RowKey, Integer>> mRowByIDEntryItr = rowByIDEntryItr;
+
+			@Override
+			public boolean hasNext() {
+				return mRowByIDEntryItr.hasNext();
+			}
+
+			@Override
+			public Map.Entry<RowKey, List<String>> next() {
+				if (hasNext()) {
+					Entry<RowKey, Integer> rowEntry = mRowByIDEntryItr.next();
+
+					return Maps.<RowKey, List<String>>immutableEntry(rowEntry.getKey(), new Row(rowEntry.getValue()));
+				}
+
+				return null;
+			}
+
+			@Override
+			public void remove() {
+				throw new IllegalStateException("Removing data is not permitted.");
+			}
+		};
+	}
+
+	/**
+	 * @return Number of rows in the table.
+	 */
+	public int getRowCount() {
+		return (mRowByID != null) ? mRowByID.size() : mRowOrder.length;
+	}
+
+	/**
+	 * Splits the rows into ranges of about the same number of rows.
+	 *
+	 * @param numSplits The number of ranges.
+	 *
+	 * @return Key of the first row of every range, at most numSplits keys and none for an empty
+	 * table.
+	 */
+	public List<RowKey> getSplitKeys(int numSplits) {
+		int numRows = getRowCount();
+		int numRanges = Math.max(1, Math.min(numSplits, numRows));
+		List<RowKey> splitKeyList = new ArrayList<RowKey>(numRanges);
+		int row = 0;
+
+		for (RowKey id : getRowByID().keySet()) {
+			// first row of range i is row (i * numRows / numRanges)
+			if ((long) splitKeyList.size() * numRows / numRanges == row) {
+				splitKeyList.add(id);
+
+				if (splitKeyList.size() == numRanges) {
+					break;
+				}
+			}
+
+			row++;
+		}
+
+		return splitKeyList;
+	}
+
 	public Iterator<List<String>> getRowItr() {
+		if (mRowByID == null) {
+			// a snapshot is read in key order without building its map of row index
+			return new Iterator<List<String>>() {
+				int mIdx;
+
+				@Override
+				public boolean hasNext() {
+					return mIdx < mRowOrder.length;
+				}
+
+				@Override
+				public List<String> next() {
+					if (hasNext()) {
+						return new Row(mRowOrder[mIdx++]);
+					}
+
+					return null;
+				}
+
+				@Override
+				public void remove() {
+					throw new IllegalStateException("Removing data is not permitted.");
+				}
+			};
+		}
+
 		return new Iterator<List<String>>() {
-			final Iterator<Entry<String, List<String>>> mDataByIDEntryItr = mDataByID.entrySet().iterator();
+			final Iterator<Integer> mRowItr = mRowByID.values().iterator();
 
 			@Override
 			public boolean hasNext() {
-				return mDataByIDEntryItr.hasNext();
+				return mRowItr.hasNext();
 			}
 
 			@Override
 			public List<String> next() {
 				if (hasNext()) {
-					return mDataByIDEntryItr.next().getValue();
+					return new Row(mRowItr.next());
 				}
 
 				return null;
@@ -384,4 +809,92 @@ public class InternalTable {
 			}
 		};
 	}
+
+	/**
+	 * Infers the type of every column from the rows added so far, and converts the columns to
+	 * their type. Values added later that are not of the type of their column are kept as text.
+	 */
+	public void inferColumnTypes() {
+		for (int i = 0; i < mNumCols; i++) {
+			final Column column = mColumnList.get(i);
+			ColumnType colType = ColumnType.infer(new AbstractList<String>() {
+				@Override
+				public String get(int row) {
+					return column.get(row);
+				}
+
+				@Override
+				public int size() {
+					return mNumRows;
+				}
+			});
+
+			if (!colType.equals(column.getType())) {
+				Column typedColumn = colType.newColumn();
+
+				for (int row = 0; row < mNumRows; row++) {
+					typedColumn.set(row, column.get(row));
+				}
+
+				mColumnList.set(i, typedColumn);
+				mSharedColumns.clear(i);
+			}
+		}
+
+		mColumnTypesInferred = true;
+
+		if (LOGGER.isDebugEnabled()) {
+			LOGGER.debug("Inferred column types " + getColumnTypes() + " from " + mNumRows + " rows.");
+		}
+	}
+
+	/**
+	 * @return True, if the column types were inferred. Otherwise, false.
+	 */
+	public boolean isColumnTypesInferred() {
+		return mColumnTypesInferred;
+	}
+
+	/**
+	 * @return The column types, in column order.
+	 */
+	public List<ColumnType> getColumnTypes() {
+		List<ColumnType> colTypeList = new ArrayList<ColumnType>(mNumCols);
+
+		for (Column column : mColumnList) {
+			colTypeList.add(column.getType());
+		}
+
+		return colTypeList;
+	}
+
+	/**
+	 * @return The type of the column, or null if there is no such column.
+	 */
+	public ColumnType getColumnType(String colName) {
+		int colIdx = getColumnIndex(colName);
+
+		return (colIdx >= 0) ? mColumnList.get(colIdx).getType() : null;
+	}
+
+	/**
+	 * Read-only view of the text of the values of a row.
+	 */
+	private class Row extends AbstractList<String> {
+		final int mRow;
+
+		Row(int row) {
+			mRow = row;
+		}
+
+		@Override
+		public String get(int colIdx) {
+			return mColumnList.get(colIdx).get(mRow);
+		}
+
+		@Override
+		public int size() {
+			return mNumCols;
+		}
+	}
 }
@@ -0,0 +1,153 @@
+package com.file.transform;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+
+/**
+ * Column of values of a primitive {@link ColumnType}, stored as longs.
+ *
+ * Whether a row holds a value is kept in a bitmap, so rows without a bit are null, or empty if
+ * marked in a second bitmap. Text that is not a value of the type is kept as is, apart from the
+ * values.
+ */
+class PrimitiveColumn extends Column {
+	// Constants
+
+	private static final int INITIAL_CAPACITY = 16;
+
+	// Attributes
+
+	private final ColumnType mType;
+
+	private long[] mValues = new long[INITIAL_CAPACITY];
+
+	/**
+	 * Rows holding a value.
+	 */
+	private BitSet mValueRows = new BitSet();
+
+	/**
+	 * Rows holding an empty string.
+	 */
+	private BitSet mEmptyRows = new BitSet();
+
+	// Associations
+
+	/**
+	 * Text of the rows that is not a value of the type, indexed by row.
+	 */
+	private HashMap<Integer, String> mTextByRowMap = new HashMap<Integer, String>();
+
+	// Constructors
+
+	PrimitiveColumn(ColumnType type) {
+		mType = type;
+	}
+
+	// Operations
+
+	@Override
+	ColumnType getType() {
+		return mType;
+	}
+
+	@Override
+	String get(int row) {
+		if (mValueRows.get(row)) {
+			return mType.decode(mValues[row]);
+		}
+		else if (mEmptyRows.get(row)) {
+			return "";
+		}
+
+		return mTextByRowMap.isEmpty() ? null : mTextByRowMap.get(row);
+	}
+
+	/**
+	 * @return The value of the row, which must hold one.
+	 */
+	long getValue(int row) {
+		if (!mValueRows.get(row)) {
+			throw new IllegalStateException("Row " + row + " does not hold a " + mType + " value.");
+		}
+
+		return mValues[row];
+	}
+
+	boolean hasValue(int row) {
+		return mValueRows.get(row);
+	}
+
+	@Override
+	void set(int row, String value) {
+		long encodedValue = (value != null) ? mType.encode(value) : ColumnType.NOT_ENCODABLE;
+
+		clear(row);
+
+		if (encodedValue != ColumnType.NOT_ENCODABLE) {
+			setValue(row, encodedValue);
+		}
+		else if (value != null && value.isEmpty()) {
+			mEmptyRows.set(row);
+		}
+		else if (value != null) {
+			mTextByRowMap.put(row, value);
+		}
+	}
+
+	@Override
+	void set(int row, Column source, int sourceRow) {
+		if (source instanceof PrimitiveColumn && mType.equals(source.getType()) &&
+				((PrimitiveColumn) source).hasValue(sourceRow)) {
+			clear(row);
+			setValue(row, ((PrimitiveColumn) source).getValue(sourceRow));
+		}
+		else {
+			super.set(row, source, sourceRow);
+		}
+	}
+
+	@Override
+	boolean isNullOrEmpty(int row) {
+		// empty strings are never kept as text
+		return !mValueRows.get(row) && (mTextByRowMap.isEmpty() || !mTextByRowMap.containsKey(row));
+	}
+
+	@Override
+	Column copy() {
+		PrimitiveColumn column = new PrimitiveColumn(mType);
+
+		column.mValues = mValues.clone();
+		column.mValueRows = (BitSet) mValueRows.clone();
+		column.mEmptyRows = (BitSet) mEmptyRows.clone();
+		column.mTextByRowMap = new HashMap<Integer, String>(mTextByRowMap);
+
+		return column;
+	}
+
+	/**
+	 * @return Number of rows holding text that is not a value of the type.
+	 */
+	int getNumTextRows() {
+		return mTextByRowMap.size();
+	}
+
+	private void setValue(int row, long value) {
+		if (row >= mValues.length) {
+			mValues = Arrays.copyOf(mValues, Math.max(mValues.length * 2, row + 1));
+		}
+
+		mValues[row] = value;
+		mValueRows.set(row);
+	}
+
+	private void clear(int row) {
+		mValueRows.clear(row);
+		mEmptyRows.clear(row);
+
+		if (!mTextByRowMap.isEmpty()) {
+			mTextByRowMap.remove(row);
+		}
+	}
+}
@@ -0,0 +1,34 @@
+package com.file.transform;
+
+import java.util.List;
+
+/**
+ * Receives the rows a table does not add, e.g. to keep them aside for inspection.
+ */
+public interface RejectSink {
+	/**
+	 * Why a row is rejected.
+	 */
+	enum Reason {
+		MALFORMED("wrong number of columns"),
+		NULL_ID("null or empty ID"),
+		DUPLICATE_ID("duplicate ID");
+
+		private final String mDescription;
+
+		private Reason(String description) {
+			mDescription = description;
+		}
+
+		public String getDescription() {
+			return mDescription;
+		}
+	}
+
+	/**
+	 * Rejects a row.
+	 *
+	 * @param dataRow The row, which is only valid during the call, as for {@link RowSink#addRow(List)}.
+	 */
+	void reject(Reason reason, List<String> dataRow);
+}
@@ -0,0 +1,82 @@
+package com.file.transform;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.RandomAccess;
+
+/**
+ * Mutable row, reused from one row to the next to hand rows to a {@link RowSink} without
+ * allocating a list per row.
+ */
+public class RowBuffer extends AbstractList<String> implements RandomAccess {
+	// Constants
+
+	private static final int INITIAL_CAPACITY = 16;
+
+	// Attributes
+
+	private String[] mValues = new String[INITIAL_CAPACITY];
+
+	private int mSize;
+
+	// Operations
+
+	@Override
+	public String get(int index) {
+		if (index >= mSize) {
+			throw new IndexOutOfBoundsException("Index " + index + " is out of bounds for size " + mSize);
+		}
+
+		return mValues[index];
+	}
+
+	@Override
+	public String set(int index, String value) {
+		String previous = get(index);
+
+		mValues[index] = value;
+
+		return previous;
+	}
+
+	@Override
+	public boolean add(String value) {
+		if (mSize == mValues.length) {
+			mValues = Arrays.copyOf(mValues, mSize * 2);
+		}
+
+		mValues[mSize++] = value;
+
+		return true;
+	}
+
+	/**
+	 * Replaces the values of the row.
+	 */
+	public void setAll(String[] values) {
+		if (values.length > mValues.length) {
+			mValues = Arrays.copyOf(values, values.length);
+		}
+		else {
+			System.arraycopy(values, 0, mValues, 0, values.length);
+		}
+
+		if (values.length < mSize) {
+			Arrays.fill(mValues, values.length, mSize, null);
+		}
+
+		mSize = values.length;
+	}
+
+	@Override
+	public void clear() {
+		Arrays.fill(mValues, 0, mSize, null);
+
+		mSize = 0;
+	}
+
+	@Override
+	public int size() {
+		return mSize;
+	}
+}
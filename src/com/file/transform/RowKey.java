@@ -0,0 +1,223 @@
+package com.file.transform;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import com.google.common.base.Joiner;
+import com.google.common.base.Strings;
+import com.google.common.hash.Funnel;
+import com.google.common.hash.PrimitiveSink;
+
+/**
+ * Row index key built from the values of one or more ID columns.
+ *
+ * The values are encoded into one compact byte array whose unsigned lexicographic order is the
+ * order of the values, compared column by column with {@link String#compareTo(String)}:
+ *
+ * 		- every UTF-16 char is encoded in 1 to 3 bytes like UTF-8 (surrogates are encoded
+ * 		  individually), which keeps the order of chars and is 1 byte per ASCII char
+ * 		- a 0x00 byte is escaped as 0x00 0xFF
+ * 		- every value is terminated by 0x00 0x01, which sorts before any char
+ *
+ * Keys can therefore be compared and hashed as cheaply as a single byte array.
+ */
+public final class RowKey implements Comparable<RowKey> {
+	// Constants
+
+	private static final byte ESCAPE = 0x00;
+
+	private static final byte ESCAPED_NULL = (byte) 0xFF;
+
+	private static final byte TERMINATOR = 0x01;
+
+	// Attributes
+
+	private final byte[] mBytes;
+
+	private int mHash;
+
+	// Constructors
+
+	private RowKey(byte[] bytes) {
+		mBytes = bytes;
+	}
+
+	// Operations
+
+	/**
+	 * @return The key of provided ID column values, or null if any value is null or empty.
+	 */
+	public static RowKey of(String... values) {
+		int length = 0;
+
+		for (String value : values) {
+			if (Strings.isNullOrEmpty(value)) {
+				return null;
+			}
+
+			length += value.length() * 3 + 2;
+		}
+
+		byte[] bytes = new byte[length];
+		int pos = 0;
+
+		for (String value : values) {
+			pos = encode(value, bytes, pos);
+		}
+
+		return new RowKey(Arrays.copyOf(bytes, pos));
+	}
+
+	/**
+	 * @return The key of the row, or null if the value of any ID column is null or empty.
+	 */
+	public static RowKey of(List<String> row, int[] idColIdxs) {
+		if (idColIdxs.length == 1) {
+			return of(row.get(idColIdxs[0]));
+		}
+
+		String[] values = new String[idColIdxs.length];
+
+		for (int i = 0; i < idColIdxs.length; i++) {
+			values[i] = row.get(idColIdxs[i]);
+		}
+
+		return of(values);
+	}
+
+	/**
+	 * @return The key previously encoded by {@link #toByteArray()}.
+	 */
+	public static RowKey fromByteArray(byte[] bytes) {
+		return new RowKey(bytes.clone());
+	}
+
+	private static int encode(String value, byte[] bytes, int pos) {
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+
+			if (c == 0) {
+				bytes[pos++] = ESCAPE;
+				bytes[pos++] = ESCAPED_NULL;
+			}
+			else if (c < 0x80) {
+				bytes[pos++] = (byte) c;
+			}
+			else if (c < 0x800) {
+				bytes[pos++] = (byte) (0xC0 | (c >> 6));
+				bytes[pos++] = (byte) (0x80 | (c & 0x3F));
+			}
+			else {
+				bytes[pos++] = (byte) (0xE0 | (c >> 12));
+				bytes[pos++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+				bytes[pos++] = (byte) (0x80 | (c & 0x3F));
+			}
+		}
+
+		bytes[pos++] = ESCAPE;
+		bytes[pos++] = TERMINATOR;
+
+		return pos;
+	}
+
+	/**
+	 * @return The ID column values of this key.
+	 */
+	public String[] getValues() {
+		List<String> valueList = new ArrayList<String>(1);
+		StringBuilder sb = new StringBuilder();
+
+		for (int pos = 0; pos < mBytes.length; ) {
+			int b = mBytes[pos++] & 0xFF;
+
+			if (b == ESCAPE) {
+				if (mBytes[pos++] == TERMINATOR) {
+					valueList.add(sb.toString());
+					sb.setLength(0);
+				}
+				else {
+					sb.append((char) 0);
+				}
+			}
+			else if (b < 0x80) {
+				sb.append((char) b);
+			}
+			else if (b < 0xE0) {
+				sb.append((char) (((b & 0x1F) << 6) | (mBytes[pos++] & 0x3F)));
+			}
+			else {
+				sb.append((char) (((b & 0x0F) << 12) | ((mBytes[pos++] & 0x3F) << 6) | (mBytes[pos++] & 0x3F)));
+			}
+		}
+
+		return valueList.toArray(new String[valueList.size()]);
+	}
+
+	public byte[] toByteArray() {
+		return mBytes.clone();
+	}
+
+	/**
+	 * @return The funnel of keys into hash functions, e.g. of a Bloom filter.
+	 */
+	public static Funnel<RowKey> funnel() {
+		return KeyFunnel.INSTANCE;
+	}
+
+	/**
+	 * Compares two encoded keys.
+	 */
+	public static int compare(byte[] bytes1, int offset1, int length1, byte[] bytes2, int offset2, int length2) {
+		int length = Math.min(length1, length2);
+
+		for (int i = 0; i < length; i++) {
+			int cmp = (bytes1[offset1 + i] & 0xFF) - (bytes2[offset2 + i] & 0xFF);
+
+			if (cmp != 0) {
+				return cmp;
+			}
+		}
+
+		return length1 - length2;
+	}
+
+	@Override
+	public int compareTo(RowKey other) {
+		return compare(mBytes, 0, mBytes.length, other.mBytes, 0, other.mBytes.length);
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		return (obj instanceof RowKey) && Arrays.equals(mBytes, ((RowKey) obj).mBytes);
+	}
+
+	@Override
+	public int hashCode() {
+		int hash = mHash;
+
+		if (hash == 0) {
+			hash = Arrays.hashCode(mBytes);
+			mHash = hash;
+		}
+
+		return hash;
+	}
+
+	@Override
+	public String toString() {
+		return Joiner.on(',').join(getValues());
+	}
+
+	/**
+	 * Funnels the encoded bytes of a key, without copying them.
+	 */
+	private enum KeyFunnel implements Funnel<RowKey> {
+		INSTANCE;
+
+		@Override
+		public void funnel(RowKey key, PrimitiveSink into) {
+			into.putBytes(key.mBytes);
+		}
+	}
+}
@@ -0,0 +1,16 @@
+package com.file.transform;
+
+import java.util.List;
+
+/**
+ * Receives rows pushed one at a time, e.g. by a file reader.
+ */
+public interface RowSink {
+	/**
+	 * Adds a row.
+	 *
+	 * @param dataRow The row, which is only valid during the call: the caller may reuse and change
+	 * it afterwards, so the sink must copy whatever it keeps.
+	 */
+	void addRow(List<String> dataRow);
+}
@@ -0,0 +1,46 @@
+package com.file.transform;
+
+import java.util.Arrays;
+
+/**
+ * Column of text values.
+ */
+class StringColumn extends Column {
+	// Constants
+
+	private static final int INITIAL_CAPACITY = 16;
+
+	// Attributes
+
+	private String[] mValues = new String[INITIAL_CAPACITY];
+
+	// Operations
+
+	@Override
+	ColumnType getType() {
+		return ColumnType.STRING;
+	}
+
+	@Override
+	String get(int row) {
+		return (row < mValues.length) ? mValues[row] : null;
+	}
+
+	@Override
+	void set(int row, String value) {
+		if (row >= mValues.length) {
+			mValues = Arrays.copyOf(mValues, Math.max(mValues.length * 2, row + 1));
+		}
+
+		mValues[row] = value;
+	}
+
+	@Override
+	Column copy() {
+		StringColumn column = new StringColumn();
+
+		column.mValues = mValues.clone();
+
+		return column;
+	}
+}
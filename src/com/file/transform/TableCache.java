@@ -0,0 +1,182 @@
+package com.file.transform;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+import com.google.common.base.Throwables;
+
+/**
+ * Bounded, least recently used cache of parsed input tables.
+ *
+ * A table is cached per input file and name of the ID column, together with the size and last
+ * modification time of the file it was parsed from, so a modified file is never served from the
+ * cache. The size and last modification time are read before the file is parsed, and the table
+ * is not cached if they changed during the parse, so a file still being written is never cached
+ * along with the version it was not parsed from. Cached tables must be treated as read-only by
+ * their users.
+ *
+ * When several threads ask for the same uncached file at once, the file is parsed only once and
+ * all of them get the same table.
+ */
+public class TableCache {
+	// Attributes
+
+	private final int mMaxEntries;
+
+	// Associations
+
+	/**
+	 * Parsed tables, indexed by path and name of the ID column.
+	 */
+	private final LinkedHashMap<String, CachedTable> mTableByKeyMap;
+
+	/**
+	 * Tables being parsed, indexed by path and name of the ID column.
+	 */
+	private final HashMap<String, FutureTask<InternalTable>> mParseByKeyMap =
+		new HashMap<String, FutureTask<InternalTable>>();
+
+	// Constructors
+
+	public TableCache(final int maxEntries) {
+		if (maxEntries <= 0) {
+			throw new IllegalStateException("Maximum number of cache entries must be positive.");
+		}
+
+		mMaxEntries = maxEntries;
+		mTableByKeyMap = new LinkedHashMap<String, CachedTable>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, CachedTable> eldest) {
+				return size() > mMaxEntries;
+			}
+		};
+	}
+
+	// Operations
+
+	/**
+	 * @return The cached table parsed from the current version of the file, or null.
+	 */
+	public synchronized InternalTable get(String filename, String idColumnName) {
+		File file = new File(filename);
+		CachedTable cachedTable = mTableByKeyMap.get(getKey(filename, idColumnName));
+
+		if (cachedTable != null && cachedTable.mLength == file.length() &&
+				cachedTable.mLastModified == file.lastModified()) {
+			return cachedTable.mTable;
+		}
+
+		return null;
+	}
+
+	/**
+	 * Returns the cached table parsed from the current version of the file, parsing and caching it
+	 * if needed.
+	 *
+	 * @param parser Parses the file, may return null if the file could not be parsed.
+	 *
+	 * @return The table, or null if the file could not be parsed.
+	 */
+	public InternalTable get(String filename, String idColumnName, Callable<InternalTable> parser) {
+		String key = getKey(filename, idColumnName);
+		File file = new File(filename);
+		long length = 0;
+		long lastModified = 0;
+		FutureTask<InternalTable> parse;
+		boolean parseHere = false;
+
+		synchronized (this) {
+			InternalTable table = get(filename, idColumnName);
+
+			if (table != null) {
+				return table;
+			}
+
+			parse = mParseByKeyMap.get(key);
+
+			if (parse == null) {
+				// the version of the file is read before the file is parsed
+				length = file.length();
+				lastModified = file.lastModified();
+				parse = new FutureTask<InternalTable>(parser);
+				parseHere = true;
+
+				mParseByKeyMap.put(key, parse);
+			}
+		}
+
+		if (parseHere) {
+			parse.run();
+		}
+
+		try {
+			InternalTable table = parse.get();
+
+			if (parseHere && table != null && file.length() == length && file.lastModified() == lastModified) {
+				put(key, new CachedTable(length, lastModified, table));
+			}
+
+			return table;
+		}
+		catch (ExecutionException e) {
+			Throwables.propagateIfPossible(e.getCause());
+
+			throw new IllegalStateException("Failed to parse \"" + filename + "\".", e.getCause());
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+
+			throw new IllegalStateException("Interrupted while waiting for \"" + filename + "\".", e);
+		}
+		finally {
+			if (parseHere) {
+				synchronized (this) {
+					mParseByKeyMap.remove(key);
+				}
+			}
+		}
+	}
+
+	private synchronized void put(String key, CachedTable cachedTable) {
+		mTableByKeyMap.put(key, cachedTable);
+	}
+
+	/**
+	 * Drops the table parsed from the file, if any.
+	 */
+	public synchronized void remove(String filename, String idColumnName) {
+		mTableByKeyMap.remove(getKey(filename, idColumnName));
+	}
+
+	public synchronized void clear() {
+		mTableByKeyMap.clear();
+	}
+
+	private static String getKey(String filename, String idColumnName) {
+		return new File(filename).getAbsolutePath() + '|' + idColumnName;
+	}
+
+	/**
+	 * Parsed table along with the version of the file it was parsed from.
+	 */
+	private static class CachedTable {
+		final long mLength;
+
+		final long mLastModified;
+
+		final InternalTable mTable;
+
+		CachedTable(long length, long lastModified, InternalTable table) {
+			mLength = length;
+			mLastModified = lastModified;
+			mTable = table;
+		}
+	}
+}
@@ -0,0 +1,24 @@
+package com.file.type;
+
+import com.google.common.base.Strings;
+
+public class CSVScannerType {
+	public enum ScannerType {
+	    NONE,
+	    SCALAR,
+	    SWAR
+	}
+
+	public static CSVScannerType.ScannerType extractScannerType(String scannerType) {
+		if (!Strings.isNullOrEmpty(scannerType)) {
+			if ("SCALAR".equalsIgnoreCase(scannerType)) {
+				return ScannerType.SCALAR;
+			}
+			else if ("SWAR".equalsIgnoreCase(scannerType)) {
+				return ScannerType.SWAR;
+			}
+		}
+
+		return ScannerType.NONE;
+	}
+}
@@ -7,12 +7,28 @@ public class InputFileType {
 	public enum FileType {
 	    HTML,
 	    CSV,
+	    COLUMNAR,
 	    UNKNOWN
 	}
 
+	/**
+	 * Extension of gzip compressed files, e.g. "first.html.gz". Only CSV and HTML files may be gzip
+	 * compressed.
+	 */
+	public static final String GZIP_EXTENSION = "GZ";
+
 	public static InputFileType.FileType extractFileType(String filename) {
 		String fileType = Files.getFileExtension(filename);
 
+		if (isCompressed(filename)) {
+			fileType = Files.getFileExtension(Files.getNameWithoutExtension(filename));
+
+			// columnar files are read by seeking to their column chunks, which gzip does not allow
+			if ("DMC".equalsIgnoreCase(fileType)) {
+				return FileType.UNKNOWN;
+			}
+		}
+
 		if (!Strings.isNullOrEmpty(fileType)) {
 			if ("HTML".equalsIgnoreCase(fileType)) {
 				return FileType.HTML;
@@ -20,8 +36,18 @@ public class InputFileType {
 			else if ("CSV".equalsIgnoreCase(fileType)) {
 				return FileType.CSV;
 			}
+			else if ("DMC".equalsIgnoreCase(fileType)) {
+				return FileType.COLUMNAR;
+			}
 		}
 
 		return FileType.UNKNOWN;
 	}
+
+	/**
+	 * @return True, if the file is gzip compressed.
+	 */
+	public static boolean isCompressed(String filename) {
+		return GZIP_EXTENSION.equalsIgnoreCase(Files.getFileExtension(filename));
+	}
 }
@@ -6,6 +6,7 @@ import com.google.common.io.Files;
 public class OutputFileType {
 	public enum FileType {
 	    CSV,
+	    COLUMNAR,
 	    UNKNOWN
 	}
 
@@ -16,6 +17,9 @@ public class OutputFileType {
 			if ("CSV".equalsIgnoreCase(fileType)) {
 				return FileType.CSV;
 			}
+			else if ("DMC".equalsIgnoreCase(fileType)) {
+				return FileType.COLUMNAR;
+			}
 		}
 
 		return FileType.UNKNOWN;
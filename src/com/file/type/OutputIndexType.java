@@ -0,0 +1,24 @@
+package com.file.type;
+
+import com.google.common.base.Strings;
+
+public class OutputIndexType {
+	public enum IndexType {
+	    NONE,
+	    SPARSE,
+	    FULL
+	}
+
+	public static OutputIndexType.IndexType extractIndexType(String indexType) {
+		if (!Strings.isNullOrEmpty(indexType)) {
+			if ("SPARSE".equalsIgnoreCase(indexType)) {
+				return IndexType.SPARSE;
+			}
+			else if ("FULL".equalsIgnoreCase(indexType)) {
+				return IndexType.FULL;
+			}
+		}
+
+		return IndexType.NONE;
+	}
+}